@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core.benchmark;
+
+import me.lambdaurora.lambdynlights.core.FalloffCurve;
+import me.lambdaurora.lambdynlights.core.LightSnapshot;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the dynamic light level queries from several threads at once, like the chunk builder workers.
+ * <p>
+ * The client thread publishing new snapshots is simulated by a group thread, the other threads mesh sections
+ * by querying each block and its neighbors.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentLightQueryBenchmark
+{
+    @Param({"100", "1000"})
+    public int lightSourcesCount;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public LightSourceLayout layout;
+
+    private final LightQueryBenchmark state = new LightQueryBenchmark();
+
+    @Setup
+    public void setup()
+    {
+        this.state.lightSourcesCount = this.lightSourcesCount;
+        this.state.layout = this.layout;
+        this.state.falloff = FalloffCurve.LINEAR;
+        this.state.setup();
+    }
+
+    @Benchmark
+    @Group("meshing")
+    @GroupThreads(4)
+    @OperationsPerInvocation(LightQueryBenchmark.QUERIES * 7)
+    public void worker(Blackhole blackhole)
+    {
+        for (int[] pos : this.state.queries) {
+            LightSnapshot snapshot = this.state.engine.getSnapshot();
+            blackhole.consume(snapshot.getDynamicLightLevel(pos[0], pos[1], pos[2]));
+            for (int i = 0; i < 6; i++) {
+                blackhole.consume(snapshot.getDynamicLightLevel(
+                        pos[0] + (i == 0 ? 1 : i == 1 ? -1 : 0),
+                        pos[1] + (i == 2 ? 1 : i == 3 ? -1 : 0),
+                        pos[2] + (i == 4 ? 1 : i == 5 ? -1 : 0)));
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("meshing")
+    @GroupThreads(1)
+    public void publisher()
+    {
+        this.state.publish();
+    }
+}
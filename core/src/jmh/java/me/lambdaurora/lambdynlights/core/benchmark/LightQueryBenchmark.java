@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core.benchmark;
+
+import me.lambdaurora.lambdynlights.core.DynamicLightMath;
+import me.lambdaurora.lambdynlights.core.FalloffCurve;
+import me.lambdaurora.lambdynlights.core.LightEngine;
+import me.lambdaurora.lambdynlights.core.LightSnapshot;
+import me.lambdaurora.lambdynlights.core.PackedLightSources;
+import me.lambdaurora.lambdynlights.core.PackedPositions;
+import me.lambdaurora.lambdynlights.core.SectionRebuildSink;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the dynamic light level queries done while meshing chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightQueryBenchmark
+{
+    static final int QUERIES = 1024;
+    private static final SectionRebuildSink NO_REBUILD = sectionPos -> {
+    };
+
+    @Param({"10", "100", "1000", "10000"})
+    public int lightSourcesCount;
+
+    @Param({"UNIFORM", "CLUSTERED", "MOSTLY_OUT_OF_RANGE"})
+    public LightSourceLayout layout;
+
+    @Param({"LINEAR"})
+    public FalloffCurve falloff;
+
+    LightSourceLayout.LightSources lightSources;
+    int[][] queries;
+    LightEngine engine;
+    PackedLightSources packed;
+    LightSnapshot snapshot;
+
+    @Setup
+    public void setup()
+    {
+        this.lightSources = this.layout.createLightSources(this.lightSourcesCount);
+        this.queries = LightSourceLayout.createQueries(this.lightSources, QUERIES);
+
+        this.engine = new LightEngine();
+        this.snapshot = this.publish();
+        this.packed = this.snapshot.getLightSources();
+    }
+
+    /**
+     * Computes the linear falloff with a square root for each light source, like the original implementation did.
+     */
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void sqrtFalloff(Blackhole blackhole)
+    {
+        for (int[] pos : this.queries) {
+            double result = 0;
+            for (int i = 0; i < this.lightSources.size(); i++) {
+                double dx = pos[0] - this.lightSources.x[i] + 0.5;
+                double dy = pos[1] - this.lightSources.y[i] + 0.5;
+                double dz = pos[2] - this.lightSources.z[i] + 0.5;
+                double distanceSquared = dx * dx + dy * dy + dz * dz;
+                if (distanceSquared <= DynamicLightMath.MAX_RADIUS_SQUARED) {
+                    double lightLevel = (1.0 - Math.sqrt(distanceSquared) / DynamicLightMath.MAX_RADIUS) * this.lightSources.luminance[i];
+                    if (lightLevel > result)
+                        result = lightLevel;
+                }
+            }
+            blackhole.consume(result);
+        }
+    }
+
+    /**
+     * Walks every light source for each query, with the falloff table.
+     */
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void linearScan(Blackhole blackhole)
+    {
+        for (int[] pos : this.queries) {
+            double result = 0;
+            for (int i = 0; i < this.lightSources.size(); i++) {
+                double lightLevel = DynamicLightMath.getLightLevel(this.falloff, pos[0], pos[1], pos[2],
+                        this.lightSources.x[i], this.lightSources.y[i], this.lightSources.z[i], this.lightSources.luminance[i]);
+                if (lightLevel > result)
+                    result = lightLevel;
+            }
+            blackhole.consume(result);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void packedQuery(Blackhole blackhole)
+    {
+        for (int[] pos : this.queries) {
+            blackhole.consume(this.packed.getDynamicLightLevel(pos[0], pos[1], pos[2]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void snapshotQuery(Blackhole blackhole)
+    {
+        for (int[] pos : this.queries) {
+            blackhole.consume(this.snapshot.getDynamicLightLevel(pos[0], pos[1], pos[2]));
+        }
+    }
+
+    @Benchmark
+    public PackedLightSources pack()
+    {
+        PackedLightSources.Builder builder = new PackedLightSources.Builder(this.lightSources.size(), this.falloff);
+        for (int i = 0; i < this.lightSources.size(); i++) {
+            builder.add(this.lightSources.x[i], this.lightSources.y[i], this.lightSources.z[i], this.lightSources.luminance[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Rebuilds the volumes of every queried section and publishes them.
+     */
+    @Benchmark
+    public LightSnapshot publish()
+    {
+        for (int[] pos : this.queries) {
+            this.engine.invalidateSection(PackedPositions.asLong(pos[0] >> 4, pos[1] >> 4, pos[2] >> 4));
+        }
+        this.engine.publish(this.pack(), this.lightSources.size(), NO_REBUILD);
+        return this.engine.getSnapshot();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic light source populations, all queries are done in a 128x32x128 area around the origin.
+ */
+public enum LightSourceLayout
+{
+    /**
+     * Light sources spread uniformly over the queried area.
+     */
+    UNIFORM {
+        @Override
+        void next(Random random, int index, LightSources lightSources)
+        {
+            lightSources.set(index, random.nextDouble() * AREA_WIDTH, random.nextDouble() * AREA_HEIGHT, random.nextDouble() * AREA_WIDTH,
+                    1 + random.nextInt(15));
+        }
+    },
+    /**
+     * Light sources grouped by piles of a few blocks wide, like dropped items or mob farms.
+     */
+    CLUSTERED {
+        @Override
+        void next(Random random, int index, LightSources lightSources)
+        {
+            Random clusterRandom = new Random(index % CLUSTERS);
+            double clusterX = clusterRandom.nextDouble() * AREA_WIDTH;
+            double clusterY = clusterRandom.nextDouble() * AREA_HEIGHT;
+            double clusterZ = clusterRandom.nextDouble() * AREA_WIDTH;
+            lightSources.set(index, clusterX + random.nextGaussian() * 2.0, clusterY + random.nextGaussian(), clusterZ + random.nextGaussian() * 2.0,
+                    1 + random.nextInt(15));
+        }
+    },
+    /**
+     * Most light sources are far away from the queried area, only one out of ten can reach it.
+     */
+    MOSTLY_OUT_OF_RANGE {
+        @Override
+        void next(Random random, int index, LightSources lightSources)
+        {
+            double offset = index % 10 == 0 ? 0 : AREA_WIDTH * 4;
+            lightSources.set(index, offset + random.nextDouble() * AREA_WIDTH, random.nextDouble() * AREA_HEIGHT, offset + random.nextDouble() * AREA_WIDTH,
+                    1 + random.nextInt(15));
+        }
+    };
+
+    static final int AREA_WIDTH = 128;
+    static final int AREA_HEIGHT = 32;
+    private static final int CLUSTERS = 16;
+
+    abstract void next(Random random, int index, LightSources lightSources);
+
+    /**
+     * Creates a population of light sources.
+     *
+     * @param count the number of light sources
+     * @return the light sources
+     */
+    public LightSources createLightSources(int count)
+    {
+        Random random = new Random(42);
+        LightSources lightSources = new LightSources(count);
+        for (int i = 0; i < count; i++) {
+            this.next(random, i, lightSources);
+        }
+        return lightSources;
+    }
+
+    /**
+     * Creates the blocks to query, close to the light sources of the layout.
+     *
+     * @param lightSources the light sources
+     * @param count the number of blocks
+     * @return the block coordinates to query, as {@code {x, y, z}} triples
+     */
+    public static int[][] createQueries(LightSources lightSources, int count)
+    {
+        Random random = new Random(1337);
+        int[][] queries = new int[count][];
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                int lightSource = random.nextInt(lightSources.size());
+                queries[i] = new int[]{
+                        (int) Math.floor(lightSources.x[lightSource] + random.nextInt(9) - 4),
+                        (int) Math.floor(lightSources.y[lightSource] + random.nextInt(9) - 4),
+                        (int) Math.floor(lightSources.z[lightSource] + random.nextInt(9) - 4)
+                };
+            } else {
+                queries[i] = new int[]{random.nextInt(AREA_WIDTH), random.nextInt(AREA_HEIGHT), random.nextInt(AREA_WIDTH)};
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Light sources stored as primitive arrays, like the mod would feed them to the engine.
+     */
+    public static final class LightSources
+    {
+        final double[] x;
+        final double[] y;
+        final double[] z;
+        final int[] luminance;
+
+        LightSources(int count)
+        {
+            this.x = new double[count];
+            this.y = new double[count];
+            this.z = new double[count];
+            this.luminance = new int[count];
+        }
+
+        void set(int index, double x, double y, double z, int luminance)
+        {
+            this.x[index] = x;
+            this.y[index] = y;
+            this.z[index] = z;
+            this.luminance[index] = luminance;
+        }
+
+        public int size()
+        {
+            return this.luminance.length;
+        }
+    }
+}
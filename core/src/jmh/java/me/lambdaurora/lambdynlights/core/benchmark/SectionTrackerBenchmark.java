@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core.benchmark;
+
+import me.lambdaurora.lambdynlights.core.FalloffCurve;
+import me.lambdaurora.lambdynlights.core.SectionRebuildSink;
+import me.lambdaurora.lambdynlights.core.SectionSourceIndex;
+import me.lambdaurora.lambdynlights.core.SectionTracker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the tracking of the sections lit by moving light sources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SectionTrackerBenchmark
+{
+    private static final int STEPS = 256;
+
+    private final SectionTracker tracker = new SectionTracker();
+    private final SectionSourceIndex<SectionTracker> index = new SectionSourceIndex<>();
+    private final SectionRebuildSink sink = sectionPos -> this.scheduledRebuilds++;
+    private long scheduledRebuilds = 0;
+
+    /**
+     * Walks a light source across several sections, updating the tracker at each step.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void walk(Blackhole blackhole)
+    {
+        for (int i = 0; i < STEPS; i++) {
+            blackhole.consume(this.tracker.update(i * 0.3, 64.5 + (i & 7) * 0.3, i * 0.2, 14, FalloffCurve.LINEAR, 0.2, this.sink, this.index, this.tracker));
+        }
+        blackhole.consume(this.scheduledRebuilds);
+    }
+}
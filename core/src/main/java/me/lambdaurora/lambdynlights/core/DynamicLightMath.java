@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Distance math of the dynamic lights.
+ */
+public final class DynamicLightMath
+{
+    // 7.75 because else we would have to update more chunks and that's not a good idea.
+    // 15 (max range for blocks) would be too much and a bit cheaty.
+    public static final double MAX_RADIUS = 7.75;
+    public static final double MAX_RADIUS_SQUARED = MAX_RADIUS * MAX_RADIUS;
+
+    private DynamicLightMath()
+    {
+        throw new UnsupportedOperationException("DynamicLightMath only contains static definitions.");
+    }
+
+    /**
+     * Returns the light level at the center of the specified block.
+     *
+     * @param falloff the falloff curve
+     * @param blockX the block X coordinate
+     * @param blockY the block Y coordinate
+     * @param blockZ the block Z coordinate
+     * @param x the light source X coordinate
+     * @param y the light source Y coordinate
+     * @param z the light source Z coordinate
+     * @param luminance the light source luminance
+     * @return the light level
+     */
+    public static double getLightLevel(@NotNull FalloffCurve falloff, int blockX, int blockY, int blockZ, double x, double y, double z, int luminance)
+    {
+        double dx = blockX - x + 0.5;
+        double dy = blockY - y + 0.5;
+        double dz = blockZ - z + 0.5;
+        return falloff.getLightLevel(luminance, dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns the importance of a light source, brighter light sources closer to the camera being more important.
+     *
+     * @param luminance the light source luminance
+     * @param distanceSquared the squared distance between the light source and the camera
+     * @return the importance
+     */
+    public static double getImportance(int luminance, double distanceSquared)
+    {
+        // A light source a section away is worth half as much as the same light source at the camera.
+        return luminance / (1.0 + Math.sqrt(distanceSquared) / 16.0);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Access to the equipment of the entities cached by {@link EquipmentLuminanceCache}, which are defined outside of the light engine.
+ *
+ * @param <E> the type of the entities
+ * @param <S> the type of the item stacks
+ */
+public interface EquipmentAccess<E, S>
+{
+    /**
+     * Returns the number of equipment slots.
+     *
+     * @return the number of equipment slots
+     */
+    int getSlotCount();
+
+    /**
+     * Returns the stack equipped in the specified slot.
+     *
+     * @param entity the entity
+     * @param slot the equipment slot
+     * @return the stack, which may be empty
+     */
+    @NotNull S getStack(@NotNull E entity, int slot);
+
+    /**
+     * Returns the item of the stack.
+     *
+     * @param stack the stack
+     * @return the item
+     */
+    @NotNull Object getItem(@NotNull S stack);
+
+    /**
+     * Returns whether the stack is empty.
+     *
+     * @param stack the stack
+     * @return {@code true} if the stack is empty, else {@code false}
+     */
+    boolean isEmpty(@NotNull S stack);
+
+    /**
+     * Returns the luminance of the stack.
+     *
+     * @param stack the stack
+     * @param submergedInWater {@code true} if the stack is submerged in water, else {@code false}
+     * @return the luminance of the stack
+     */
+    int getLuminance(@NotNull S stack, boolean submergedInWater);
+
+    /**
+     * Returns the generation of the item luminances, which changes when they are reloaded.
+     *
+     * @return the generation
+     */
+    int getGeneration();
+}
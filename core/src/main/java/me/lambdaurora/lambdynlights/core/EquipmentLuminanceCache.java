@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Caches the luminance of the items equipped by an entity.
+ * <p>
+ * The luminance is only recomputed when the stack or the item of an equipment slot changes, when the submerged state flips,
+ * or when the item luminances are reloaded. Otherwise a tick only compares the equipment slots.
+ *
+ * @param <E> the type of the entities
+ * @param <S> the type of the item stacks
+ */
+public final class EquipmentLuminanceCache<E, S>
+{
+    private final EquipmentAccess<E, S> access;
+    private final SlotIdentityCache slots;
+    private boolean submergedInWater = false;
+    private int generation = -1;
+    private int luminance = 0;
+
+    /**
+     * Creates a new empty cache.
+     *
+     * @param access the access to the equipment
+     */
+    public EquipmentLuminanceCache(@NotNull EquipmentAccess<E, S> access)
+    {
+        this.access = access;
+        this.slots = new SlotIdentityCache(access.getSlotCount());
+    }
+
+    /**
+     * Returns whether the entity equips any item.
+     *
+     * @param access the access to the equipment
+     * @param entity the entity
+     * @param <E> the type of the entities
+     * @param <S> the type of the item stacks
+     * @return {@code true} if any equipment slot is not empty, else {@code false}
+     */
+    public static <E, S> boolean hasEquipment(@NotNull EquipmentAccess<E, S> access, @NotNull E entity)
+    {
+        for (int slot = 0; slot < access.getSlotCount(); slot++) {
+            if (!access.isEmpty(access.getStack(entity, slot)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the luminance of the brightest item equipped by the entity, without caching it.
+     *
+     * @param access the access to the equipment
+     * @param entity the entity
+     * @param submergedInWater {@code true} if the entity is submerged in water, else {@code false}
+     * @param <E> the type of the entities
+     * @param <S> the type of the item stacks
+     * @return the equipment luminance
+     */
+    public static <E, S> int computeLuminance(@NotNull EquipmentAccess<E, S> access, @NotNull E entity, boolean submergedInWater)
+    {
+        int luminance = 0;
+        for (int slot = 0; slot < access.getSlotCount(); slot++) {
+            S stack = access.getStack(entity, slot);
+            if (!access.isEmpty(stack))
+                luminance = Math.max(luminance, access.getLuminance(stack, submergedInWater));
+        }
+        return luminance;
+    }
+
+    /**
+     * Returns the luminance of the brightest item equipped by the entity.
+     *
+     * @param entity the entity
+     * @param submergedInWater {@code true} if the entity is submerged in water, else {@code false}
+     * @return the equipment luminance
+     */
+    @SuppressWarnings("unchecked")
+    public int getLuminance(@NotNull E entity, boolean submergedInWater)
+    {
+        int generation = this.access.getGeneration();
+        boolean valid = this.generation == generation && this.submergedInWater == submergedInWater;
+        for (int slot = 0; slot < this.slots.size(); slot++) {
+            S stack = this.access.getStack(entity, slot);
+            if (this.slots.set(slot, stack, this.access.getItem(stack)))
+                valid = false;
+        }
+
+        if (!valid) {
+            this.generation = generation;
+            this.submergedInWater = submergedInWater;
+            this.luminance = 0;
+            for (int slot = 0; slot < this.slots.size(); slot++) {
+                S stack = (S) this.slots.getStack(slot);
+                if (!this.access.isEmpty(stack))
+                    this.luminance = Math.max(this.luminance, this.access.getLuminance(stack, submergedInWater));
+            }
+        }
+        return this.luminance;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Falloff curves of the dynamic lights.
+ * <p>
+ * Each curve is sampled once into a table indexed by the quantized squared distance, and interpolated between two samples,
+ * so the light level queries never compute a square root and every curve costs the same at query time.
+ */
+public enum FalloffCurve
+{
+    /**
+     * The light decreases linearly with the distance.
+     */
+    LINEAR {
+        @Override
+        double getMultiplier(double t)
+        {
+            return 1.0 - t;
+        }
+    },
+    /**
+     * The light decreases quickly close to the light source, and fades out slowly.
+     */
+    QUADRATIC {
+        @Override
+        double getMultiplier(double t)
+        {
+            return (1.0 - t) * (1.0 - t);
+        }
+    },
+    /**
+     * The light stays bright close to the light source, and fades out smoothly at the edge of the radius.
+     */
+    SMOOTHSTEP {
+        @Override
+        double getMultiplier(double t)
+        {
+            return 1.0 - t * t * (3.0 - 2.0 * t);
+        }
+    };
+
+    /**
+     * Number of table entries per squared block of distance.
+     */
+    private static final int STEPS_PER_DISTANCE_SQUARED = 64;
+    // One extra sample so the interpolation never reads past the table.
+    private static final int TABLE_SIZE = (int) Math.ceil(DynamicLightMath.MAX_RADIUS_SQUARED * STEPS_PER_DISTANCE_SQUARED) + 2;
+
+    /**
+     * Lowest light level kept in the section volumes, in sixteenths of a light level.
+     */
+    private static final double MIN_LIGHT_LEVEL = 1.0 / 16.0;
+    private static final int MAX_LUMINANCE = 15;
+
+    // Filled once the static fields are initialized, as they are not yet when the constants are constructed.
+    private float[] table;
+    private double[] effectiveRadii;
+
+    static {
+        for (FalloffCurve curve : values()) {
+            curve.table = new float[TABLE_SIZE];
+            for (int i = 0; i < TABLE_SIZE; i++) {
+                double t = Math.min(Math.sqrt((double) i / STEPS_PER_DISTANCE_SQUARED) / DynamicLightMath.MAX_RADIUS, 1.0);
+                curve.table[i] = (float) Math.max(curve.getMultiplier(t), 0.0);
+            }
+
+            curve.effectiveRadii = new double[MAX_LUMINANCE + 1];
+            for (int luminance = 1; luminance <= MAX_LUMINANCE; luminance++) {
+                // The curves never increase, so the last sample still lighting bounds the lit distance.
+                int last = TABLE_SIZE - 1;
+                while (last > 0 && curve.table[last] * luminance < MIN_LIGHT_LEVEL)
+                    last--;
+                double radiusSquared = Math.min((double) (last + 1) / STEPS_PER_DISTANCE_SQUARED, DynamicLightMath.MAX_RADIUS_SQUARED);
+                curve.effectiveRadii[luminance] = Math.sqrt(radiusSquared);
+            }
+        }
+    }
+
+    /**
+     * Returns the light multiplier at the specified distance.
+     *
+     * @param t the distance divided by the light radius, between 0 and 1
+     * @return the light multiplier, between 0 and 1
+     */
+    abstract double getMultiplier(double t);
+
+    /**
+     * Returns the light level of a light source at the specified squared distance.
+     *
+     * @param luminance the luminance of the light source
+     * @param distanceSquared the squared distance to the light source
+     * @return the light level, {@code 0} if out of range
+     */
+    public double getLightLevel(int luminance, double distanceSquared)
+    {
+        if (luminance <= 0 || distanceSquared > DynamicLightMath.MAX_RADIUS_SQUARED)
+            return 0;
+        double step = distanceSquared * STEPS_PER_DISTANCE_SQUARED;
+        int index = (int) step;
+        float multiplier = this.table[index];
+        return (multiplier + (this.table[index + 1] - multiplier) * (step - index)) * luminance;
+    }
+
+    /**
+     * Returns the distance from a light source at which its light level becomes too low to be kept.
+     *
+     * @param luminance the luminance of the light source
+     * @return the effective radius of the light source, {@code 0} if unlit
+     */
+    public double getEffectiveRadius(int luminance)
+    {
+        if (luminance <= 0)
+            return 0;
+        if (luminance > MAX_LUMINANCE)
+            return DynamicLightMath.MAX_RADIUS;
+        return this.effectiveRadii[luminance];
+    }
+
+    /**
+     * Returns the falloff curve with the specified name.
+     *
+     * @param name the name of the curve
+     * @return the curve, or {@link #LINEAR} if the name is unknown
+     */
+    public static @NotNull FalloffCurve byName(@Nullable String name)
+    {
+        for (FalloffCurve curve : values()) {
+            if (curve.name().equalsIgnoreCase(name))
+                return curve;
+        }
+        return LINEAR;
+    }
+}
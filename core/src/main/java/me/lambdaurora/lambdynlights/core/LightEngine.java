@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Owns the section light volumes and publishes the {@link LightSnapshot}s read by the chunk builder threads.
+ * <p>
+ * The engine is only mutated by a single thread, the other threads only read the last published snapshot.
+ * <p>
+ * Section rebuild requests are coalesced until the next publication, which rebuilds each requested section once.
+ */
+public final class LightEngine
+{
+    private final SectionLightVolumes volumes = new SectionLightVolumes();
+    private volatile LightSnapshot snapshot = LightSnapshot.EMPTY;
+    private int requestedRebuilds = 0;
+    private int lastRequestedRebuilds = 0;
+    private int lastQueuedRebuilds = 0;
+    private int lastIssuedRebuilds = 0;
+
+    /**
+     * Marks the dynamic lights of the specified chunk section as outdated.
+     *
+     * @param sectionPos the packed chunk section position
+     */
+    public void invalidateSection(long sectionPos)
+    {
+        this.requestedRebuilds++;
+        this.volumes.invalidate(sectionPos);
+    }
+
+    /**
+     * Returns whether some section volumes are waiting to be rebuilt.
+     *
+     * @return {@code true} if some volumes are outdated, else {@code false}
+     */
+    public boolean isDirty()
+    {
+        return this.volumes.isDirty();
+    }
+
+    /**
+     * Rebuilds the outdated section volumes and publishes a new snapshot.
+     * <p>
+     * Only the outdated sections whose light levels changed are sent to the sink, the other ones do not need a chunk rebuild.
+     * If neither the light sources nor any volume changed, the previous snapshot stays published.
+     *
+     * @param lightSources the packed light sources
+     * @param lightSourcesCount the number of tracked light sources, lit or not
+     * @param sink the sink receiving the sections to rebuild
+     */
+    public void publish(@NotNull PackedLightSources lightSources, int lightSourcesCount, @NotNull SectionRebuildSink sink)
+    {
+        if (this.volumes.isDirty()) {
+            this.lastRequestedRebuilds = this.requestedRebuilds;
+            this.lastQueuedRebuilds = this.volumes.getDirtyCount();
+            this.lastIssuedRebuilds = this.volumes.rebuild(lightSources, sink);
+            this.requestedRebuilds = 0;
+        }
+        LightSnapshot snapshot = this.snapshot;
+        if (lightSources == snapshot.getLightSources() && lightSourcesCount == snapshot.getLightSourcesCount() && !this.volumes.hasChanges())
+            return;
+        this.snapshot = new LightSnapshot(snapshot.getVersion() + 1, lightSources, this.volumes.publishShards(), this.volumes.size(), lightSourcesCount);
+    }
+
+    /**
+     * Clears every section volume, and sends every lit or outdated section to the sink.
+     * <p>
+     * The dynamic light of the cleared sections stays in their meshes until they are rebuilt,
+     * and no later publication would report them as changed.
+     *
+     * @param sink the sink receiving the sections to rebuild
+     */
+    public void clear(@NotNull SectionRebuildSink sink)
+    {
+        this.volumes.clear(sink);
+        this.requestedRebuilds = 0;
+    }
+
+    /**
+     * Returns the number of section rebuild requests, duplicates included, coalesced by the last publication which rebuilt sections.
+     *
+     * @return the number of requested rebuilds
+     */
+    public int getLastRequestedRebuilds()
+    {
+        return this.lastRequestedRebuilds;
+    }
+
+    /**
+     * Returns the number of distinct sections recomputed by the last publication which rebuilt sections.
+     *
+     * @return the number of queued rebuilds
+     */
+    public int getLastQueuedRebuilds()
+    {
+        return this.lastQueuedRebuilds;
+    }
+
+    /**
+     * Returns the number of sections whose light levels changed at the last publication which rebuilt sections,
+     * and which were actually sent to be rebuilt.
+     *
+     * @return the number of issued rebuilds
+     */
+    public int getLastIssuedRebuilds()
+    {
+        return this.lastIssuedRebuilds;
+    }
+
+    /**
+     * Returns the last published snapshot.
+     *
+     * @return the snapshot
+     */
+    public @NotNull LightSnapshot getSnapshot()
+    {
+        return this.snapshot;
+    }
+}
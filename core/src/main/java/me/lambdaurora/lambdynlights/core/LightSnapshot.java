@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable view of the dynamic lights published once per frame by the {@link LightEngine}.
+ * <p>
+ * Snapshots are never modified once published, so chunk builder threads can read them without any locking.
+ */
+public final class LightSnapshot
+{
+    public static final LightSnapshot EMPTY = new LightSnapshot(0, PackedLightSources.EMPTY, SectionLightVolumes.newShards(), 0, 0);
+
+    private final long version;
+    private final PackedLightSources lightSources;
+    private final Long2ObjectOpenHashMap<byte[]>[] volumes;
+    private final int litSectionsCount;
+    private final int lightSourcesCount;
+
+    LightSnapshot(long version, @NotNull PackedLightSources lightSources, @NotNull Long2ObjectOpenHashMap<byte[]>[] volumes, int litSectionsCount,
+                  int lightSourcesCount)
+    {
+        this.version = version;
+        this.lightSources = lightSources;
+        this.volumes = volumes;
+        this.litSectionsCount = litSectionsCount;
+        this.lightSourcesCount = lightSourcesCount;
+    }
+
+    /**
+     * Returns the version of this snapshot, incremented at each publication.
+     *
+     * @return the version
+     */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * Returns the number of light sources at the time of the publication.
+     *
+     * @return the number of light sources
+     */
+    public int getLightSourcesCount()
+    {
+        return this.lightSourcesCount;
+    }
+
+    /**
+     * Returns the packed light sources of this snapshot.
+     *
+     * @return the packed light sources
+     */
+    public @NotNull PackedLightSources getLightSources()
+    {
+        return this.lightSources;
+    }
+
+    /**
+     * Returns the number of lit chunk sections.
+     *
+     * @return the number of lit chunk sections
+     */
+    public int getLitSectionsCount()
+    {
+        return this.litSectionsCount;
+    }
+
+    /**
+     * Returns the dynamic light level at the specified block.
+     *
+     * @param x the block X coordinate
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate
+     * @return the dynamic light level at the specified block
+     */
+    public double getDynamicLightLevel(int x, int y, int z)
+    {
+        byte[] volume = SectionLightVolumes.get(this.volumes, PackedPositions.asLong(x >> 4, y >> 4, z >> 4));
+        if (volume == null)
+            return 0;
+        return (volume[SectionLightVolumes.getIndex(x, y, z)] & 0xff) / 16.0;
+    }
+}
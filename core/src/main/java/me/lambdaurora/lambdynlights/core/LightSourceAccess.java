@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Access to the light sources stored in {@link LightSourceSlots}, which are defined outside of the light engine.
+ *
+ * @param <S> the type of the light sources
+ */
+public interface LightSourceAccess<S>
+{
+    /**
+     * Returns the slot stored by the light source.
+     *
+     * @param source the light source
+     * @return the slot, or {@code -1} if the light source is not stored
+     */
+    int getSlot(@NotNull S source);
+
+    /**
+     * Stores the slot of the light source in the light source.
+     *
+     * @param source the light source
+     * @param slot the slot, or {@code -1} if the light source is not stored anymore
+     */
+    void setSlot(@NotNull S source, int slot);
+
+    /**
+     * Returns the X coordinate of the light source.
+     *
+     * @param source the light source
+     * @return the X coordinate
+     */
+    double getX(@NotNull S source);
+
+    /**
+     * Returns the Y coordinate of the light source.
+     *
+     * @param source the light source
+     * @return the Y coordinate
+     */
+    double getY(@NotNull S source);
+
+    /**
+     * Returns the Z coordinate of the light source.
+     *
+     * @param source the light source
+     * @return the Z coordinate
+     */
+    double getZ(@NotNull S source);
+
+    /**
+     * Returns the luminance of the light source.
+     *
+     * @param source the light source
+     * @return the luminance
+     */
+    int getLuminance(@NotNull S source);
+
+    /**
+     * Stops tracking the sections lit by the light source, which still owns its slot and its tracker.
+     *
+     * @param source the light source
+     */
+    void untrack(@NotNull S source);
+}
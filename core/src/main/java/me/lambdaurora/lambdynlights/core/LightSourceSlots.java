@@ -0,0 +1,503 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.booleans.BooleanArrays;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Dense array of the tracked light sources, with side tables indexed by slot.
+ * <p>
+ * Each light source stores its own slot, so adding, removing and looking up a light source does not hash anything.
+ * A removed light source is replaced by the last one, so the slots stay stable until a light source is removed,
+ * and can be updated in round-robin.
+ * <p>
+ * The section tracker, the luminance and the attachment of each light source live in side tables,
+ * so only the stored light sources carry them. The trackers of the removed light sources are pooled.
+ * <p>
+ * Only the collectable light sources, which are seen by each light sources pass, are purged with their chunk or swept.
+ * <p>
+ * The number of active light sources is capped: the least important light sources are demoted,
+ * they stay stored but do not light anything until they are promoted back.
+ *
+ * @param <S> the type of the light sources
+ */
+public final class LightSourceSlots<S> implements Iterable<S>
+{
+    // Enough to absorb the light sources flickering in a tick without keeping the trackers of a crowd alive forever.
+    private static final int MAX_POOLED_TRACKERS = 256;
+
+    private final LightSourceAccess<S> access;
+    private final ObjectArrayList<S> sources = new ObjectArrayList<>();
+    private SectionTracker[] trackers = new SectionTracker[64];
+    private final ObjectArrayList<SectionTracker> pooledTrackers = new ObjectArrayList<>();
+    private int[] luminances = new int[64];
+    // Per light source state owned by the caller, like the equipment luminance cache of an entity.
+    private Object[] attachments = new Object[64];
+    // Generation of the last light sources pass which saw the light source of each slot.
+    private int[] lastSeen = new int[64];
+    private int generation = 0;
+    // Whether the light source of each slot is purged with its chunk and swept once it is not seen anymore.
+    private boolean[] collectable = new boolean[64];
+    // Whether the light source of each slot is demoted.
+    private boolean[] demoted = new boolean[64];
+    private int demotedCount = 0;
+    private int maxActive = Integer.MAX_VALUE;
+    private boolean changed = false;
+    private Object[] budgetSources = new Object[64];
+    private double[] budgetScores = new double[64];
+    // Sorts the budget candidates by decreasing importance.
+    private final IntComparator budgetComparator = (a, b) -> Double.compare(this.budgetScores[b], this.budgetScores[a]);
+    private final Swapper budgetSwapper = (a, b) -> {
+        Object source = this.budgetSources[a];
+        this.budgetSources[a] = this.budgetSources[b];
+        this.budgetSources[b] = source;
+        double score = this.budgetScores[a];
+        this.budgetScores[a] = this.budgetScores[b];
+        this.budgetScores[b] = score;
+    };
+
+    /**
+     * Creates new empty slots.
+     *
+     * @param access the access to the light sources
+     */
+    public LightSourceSlots(@NotNull LightSourceAccess<S> access)
+    {
+        this.access = access;
+    }
+
+    /**
+     * Adds the collectable light source in a new slot.
+     *
+     * @param source the light source
+     * @return {@code true} if the light source was not already stored, else {@code false}
+     * @see #add(Object, boolean)
+     */
+    public boolean add(@NotNull S source)
+    {
+        return this.add(source, true);
+    }
+
+    /**
+     * Adds the light source in a new slot.
+     *
+     * @param source the light source
+     * @param collectable {@code true} if the light source is purged with its chunk and swept once it is not
+     * {@linkplain #markSeen(Object) seen} anymore, or {@code false} if it is only removed explicitly
+     * @return {@code true} if the light source was not already stored, else {@code false}
+     */
+    public boolean add(@NotNull S source, boolean collectable)
+    {
+        if (this.contains(source))
+            return false;
+        int slot = this.sources.size();
+        this.sources.add(source);
+        this.access.setSlot(source, slot);
+        if (this.demoted.length <= slot) {
+            this.demoted = BooleanArrays.grow(this.demoted, slot + 1);
+            this.trackers = ObjectArrays.setLength(this.trackers, this.demoted.length);
+            this.lastSeen = IntArrays.setLength(this.lastSeen, this.demoted.length);
+            this.collectable = BooleanArrays.setLength(this.collectable, this.demoted.length);
+            this.luminances = IntArrays.setLength(this.luminances, this.demoted.length);
+            this.attachments = ObjectArrays.setLength(this.attachments, this.demoted.length);
+        }
+        this.luminances[slot] = 0;
+        this.lastSeen[slot] = this.generation;
+        this.collectable[slot] = collectable;
+        this.trackers[slot] = this.pooledTrackers.isEmpty() ? new SectionTracker() : this.pooledTrackers.pop();
+        // Past the budget, new light sources wait for the next evaluation to be promoted.
+        this.demoted[slot] = false;
+        if (this.getActiveCount() > this.maxActive)
+            this.setDemoted(slot, true);
+        this.changed = true;
+        return true;
+    }
+
+    /**
+     * Removes the light source, and stops tracking its sections.
+     *
+     * @param source the light source
+     * @return {@code true} if the light source was stored, else {@code false}
+     */
+    public boolean remove(@NotNull S source)
+    {
+        if (!this.contains(source))
+            return false;
+        this.removeSlot(this.access.getSlot(source));
+        return true;
+    }
+
+    // Stops tracking the sections of the removed light source, and moves the last light source into its slot.
+    private void removeSlot(int slot)
+    {
+        S source = this.sources.get(slot);
+        this.access.untrack(source);
+        this.releaseTracker(this.trackers[slot]);
+        this.setDemoted(slot, false);
+        int lastSlot = this.sources.size() - 1;
+        S last = this.sources.remove(lastSlot);
+        if (slot != lastSlot) {
+            this.sources.set(slot, last);
+            this.access.setSlot(last, slot);
+            this.demoted[slot] = this.demoted[lastSlot];
+            this.demoted[lastSlot] = false;
+            this.trackers[slot] = this.trackers[lastSlot];
+            this.lastSeen[slot] = this.lastSeen[lastSlot];
+            this.collectable[slot] = this.collectable[lastSlot];
+            this.luminances[slot] = this.luminances[lastSlot];
+            this.attachments[slot] = this.attachments[lastSlot];
+        }
+        this.trackers[lastSlot] = null;
+        this.attachments[lastSlot] = null;
+        this.access.setSlot(source, -1);
+        this.changed = true;
+    }
+
+    private void releaseTracker(@NotNull SectionTracker tracker)
+    {
+        tracker.clear();
+        if (this.pooledTrackers.size() < MAX_POOLED_TRACKERS)
+            this.pooledTrackers.push(tracker);
+    }
+
+    private boolean setDemoted(int slot, boolean demoted)
+    {
+        if (this.demoted[slot] == demoted)
+            return false;
+        this.demoted[slot] = demoted;
+        this.demotedCount += demoted ? 1 : -1;
+        return true;
+    }
+
+    /**
+     * Returns whether the light source is stored or not.
+     *
+     * @param source the light source
+     * @return {@code true} if the light source is stored, else {@code false}
+     */
+    public boolean contains(@NotNull S source)
+    {
+        // The slot is checked against the array, so a slot from other slots never matches.
+        int slot = this.access.getSlot(source);
+        return slot >= 0 && slot < this.sources.size() && this.sources.get(slot) == source;
+    }
+
+    /**
+     * Returns the number of stored light sources.
+     *
+     * @return the number of stored light sources
+     */
+    public int size()
+    {
+        return this.sources.size();
+    }
+
+    /**
+     * Returns the light source in the specified slot.
+     *
+     * @param slot the slot, lower than {@link #size()}
+     * @return the light source
+     */
+    public @NotNull S get(int slot)
+    {
+        return this.sources.get(slot);
+    }
+
+    /**
+     * Returns the section tracker of the light source.
+     *
+     * @param source the light source
+     * @return the section tracker, or {@code null} if the light source is not stored
+     */
+    public @Nullable SectionTracker getTracker(@NotNull S source)
+    {
+        return this.contains(source) ? this.trackers[this.access.getSlot(source)] : null;
+    }
+
+    /**
+     * Returns the luminance stored for the light source.
+     *
+     * @param source the light source
+     * @return the luminance, or {@code 0} if the light source is not stored
+     */
+    public int getLuminance(@NotNull S source)
+    {
+        return this.contains(source) ? this.luminances[this.access.getSlot(source)] : 0;
+    }
+
+    /**
+     * Stores the luminance of the light source, which is dropped with its slot.
+     *
+     * @param source the light source, which must be stored
+     * @param luminance the luminance
+     */
+    public void setLuminance(@NotNull S source, int luminance)
+    {
+        if (this.contains(source))
+            this.luminances[this.access.getSlot(source)] = luminance;
+    }
+
+    /**
+     * Returns the attachment of the light source.
+     *
+     * @param source the light source
+     * @return the attachment, or {@code null} if the light source has none or is not stored
+     */
+    public @Nullable Object getAttachment(@NotNull S source)
+    {
+        return this.contains(source) ? this.attachments[this.access.getSlot(source)] : null;
+    }
+
+    /**
+     * Attaches the specified object to the light source until it is removed.
+     *
+     * @param source the light source, which must be stored
+     * @param attachment the attachment, or {@code null} to drop it
+     */
+    public void setAttachment(@NotNull S source, @Nullable Object attachment)
+    {
+        if (this.contains(source))
+            this.attachments[this.access.getSlot(source)] = attachment;
+    }
+
+    /**
+     * Starts a new light sources pass, every light source still in the world is expected to be {@linkplain #markSeen(Object) seen} by it.
+     */
+    public void nextGeneration()
+    {
+        this.generation++;
+    }
+
+    /**
+     * Marks the light source as seen by the current light sources pass.
+     *
+     * @param source the light source
+     */
+    public void markSeen(@NotNull S source)
+    {
+        if (this.contains(source))
+            this.lastSeen[this.access.getSlot(source)] = this.generation;
+    }
+
+    /**
+     * Removes the collectable light sources which were not seen by the current light sources pass, as they left the world without being removed.
+     *
+     * @return the number of removed light sources
+     */
+    public int sweep()
+    {
+        int removed = 0;
+        // Walks backwards, as the last light source moves into the removed slot.
+        for (int slot = this.sources.size() - 1; slot >= 0; slot--) {
+            if (this.collectable[slot] && this.lastSeen[slot] != this.generation) {
+                this.removeSlot(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the collectable light sources standing in the specified chunks.
+     *
+     * @param chunks the packed chunk positions, as given by {@link PackedPositions#chunkOf(double, double)}
+     * @return the number of removed light sources
+     */
+    public int purgeChunks(@NotNull LongSet chunks)
+    {
+        if (chunks.isEmpty())
+            return 0;
+
+        int removed = 0;
+        for (int slot = this.sources.size() - 1; slot >= 0; slot--) {
+            if (!this.collectable[slot])
+                continue;
+            S source = this.sources.get(slot);
+            if (chunks.contains(PackedPositions.chunkOf(this.access.getX(source), this.access.getZ(source)))) {
+                this.removeSlot(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns whether the light source lights its surroundings, or is demoted by the active light sources budget.
+     *
+     * @param source the light source
+     * @return {@code true} if the light source is active, else {@code false}
+     */
+    public boolean isActive(@NotNull S source)
+    {
+        return !this.contains(source) || !this.demoted[this.access.getSlot(source)];
+    }
+
+    /**
+     * Returns the number of active light sources.
+     *
+     * @return the number of active light sources
+     */
+    public int getActiveCount()
+    {
+        return this.sources.size() - this.demotedCount;
+    }
+
+    /**
+     * Selects the most important light sources within the active light sources budget, and demotes the other ones.
+     * <p>
+     * Demoted light sources stop tracking their sections, and promoted light sources track them again at their next update.
+     *
+     * @param maxActive the maximum number of active light sources
+     * @param cameraX the camera X coordinate
+     * @param cameraY the camera Y coordinate
+     * @param cameraZ the camera Z coordinate
+     * @param favored the light source which is always active, like the local player
+     */
+    @SuppressWarnings("unchecked")
+    public void applyBudget(int maxActive, double cameraX, double cameraY, double cameraZ, @Nullable S favored)
+    {
+        this.maxActive = maxActive;
+        int count = this.sources.size();
+        if (count <= maxActive) {
+            if (this.demotedCount != 0) {
+                java.util.Arrays.fill(this.demoted, 0, count, false);
+                this.demotedCount = 0;
+                this.changed = true;
+            }
+            return;
+        }
+
+        if (this.budgetSources.length < count) {
+            int capacity = Math.max(count, this.budgetSources.length * 2);
+            this.budgetSources = new Object[capacity];
+            this.budgetScores = new double[capacity];
+        }
+
+        for (int i = 0; i < count; i++) {
+            S source = this.sources.get(i);
+            double dx = this.access.getX(source) - cameraX;
+            double dy = this.access.getY(source) - cameraY;
+            double dz = this.access.getZ(source) - cameraZ;
+            this.budgetSources[i] = source;
+            this.budgetScores[i] = source == favored ? Double.POSITIVE_INFINITY
+                    : DynamicLightMath.getImportance(this.access.getLuminance(source), dx * dx + dy * dy + dz * dz);
+        }
+        Arrays.quickSort(0, count, this.budgetComparator, this.budgetSwapper);
+
+        for (int i = 0; i < count; i++) {
+            S source = (S) this.budgetSources[i];
+            int slot = this.access.getSlot(source);
+            if (i < maxActive) {
+                if (this.setDemoted(slot, false))
+                    this.changed = true;
+            } else if (this.setDemoted(slot, true)) {
+                this.access.untrack(source);
+                this.changed = true;
+            }
+            this.budgetSources[i] = null;
+        }
+    }
+
+    /**
+     * Returns whether light sources were added, removed, promoted or demoted since the last {@linkplain #pack(PackedLightSources.Builder) packing}.
+     *
+     * @return {@code true} if the light sources changed, else {@code false}
+     */
+    public boolean isChanged()
+    {
+        return this.changed;
+    }
+
+    /**
+     * Adds the active light sources to the builder.
+     *
+     * @param builder the builder of the packed light sources
+     */
+    public void pack(@NotNull PackedLightSources.Builder builder)
+    {
+        for (int slot = 0; slot < this.sources.size(); slot++) {
+            if (this.demoted[slot])
+                continue;
+            S source = this.sources.get(slot);
+            builder.add(this.access.getX(source), this.access.getY(source), this.access.getZ(source), this.access.getLuminance(source));
+        }
+        this.changed = false;
+    }
+
+    /**
+     * Removes every light source at once, without untracking their sections.
+     */
+    public void clear()
+    {
+        for (int slot = 0; slot < this.sources.size(); slot++) {
+            this.access.setSlot(this.sources.get(slot), -1);
+            this.releaseTracker(this.trackers[slot]);
+            this.trackers[slot] = null;
+            this.attachments[slot] = null;
+        }
+        java.util.Arrays.fill(this.demoted, 0, this.sources.size(), false);
+        this.demotedCount = 0;
+        this.sources.clear();
+        this.changed = true;
+    }
+
+    /**
+     * Returns an iterator over the light sources in slot order, whose removal moves the last light source into the removed slot
+     * and visits it next.
+     *
+     * @return the iterator
+     */
+    @Override
+    public @NotNull Iterator<S> iterator()
+    {
+        return new Iterator<S>()
+        {
+            private int slot = 0;
+            private boolean removable = false;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.slot < LightSourceSlots.this.sources.size();
+            }
+
+            @Override
+            public S next()
+            {
+                if (!this.hasNext())
+                    throw new NoSuchElementException();
+                this.removable = true;
+                return LightSourceSlots.this.sources.get(this.slot++);
+            }
+
+            @Override
+            public void remove()
+            {
+                if (!this.removable)
+                    throw new IllegalStateException();
+                this.removable = false;
+                // The last light source moves into the removed slot, which is visited again.
+                LightSourceSlots.this.removeSlot(--this.slot);
+            }
+        };
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents the level of detail of a light source ticking, depending on its horizontal distance to the camera.
+ * <p>
+ * Rendered chunks are whole columns, so the vertical distance never parks a light source.
+ */
+public enum LodTier
+{
+    /**
+     * The light source is ticked every tick.
+     */
+    NEAR,
+    /**
+     * The light source is ticked once every few ticks.
+     */
+    MID,
+    /**
+     * The light source cannot light any rendered block, it is not ticked nor tracked.
+     */
+    PARKED;
+
+    /**
+     * Returns the tier of a light source.
+     *
+     * @param distanceSquared the squared horizontal distance between the light source and the camera
+     * @param nearDistance the distance under which light sources are ticked every tick
+     * @param visibleDistance the distance over which light sources cannot light any rendered block
+     * @return the tier
+     */
+    public static @NotNull LodTier of(double distanceSquared, double nearDistance, double visibleDistance)
+    {
+        if (distanceSquared <= nearDistance * nearDistance)
+            return NEAR;
+        if (distanceSquared <= visibleDistance * visibleDistance)
+            return MID;
+        return PARKED;
+    }
+
+    /**
+     * Returns the distance over which light sources cannot light any rendered block.
+     *
+     * @param renderDistance the render distance, in chunks
+     * @return the visible distance, in blocks
+     */
+    public static double getVisibleDistance(int renderDistance)
+    {
+        // The farthest rendered block is in the corner of the farthest rendered chunk, measured from anywhere in the camera chunk,
+        // and the light reaches MAX_RADIUS blocks beyond it.
+        return (renderDistance + 1) * 16 * Math.sqrt(2.0) + DynamicLightMath.MAX_RADIUS;
+    }
+}
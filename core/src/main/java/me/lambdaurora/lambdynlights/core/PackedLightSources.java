@@ -0,0 +1,329 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Packed copy of the lit dynamic light sources, stored as primitive arrays and grouped by chunk section.
+ * <p>
+ * The light sources are copied once per publication, so the queries never call back into the light sources.
+ * The light radius is smaller than half a section, so any block can only be reached by the light sources
+ * of the 2x2x2 sections surrounding its center.
+ */
+public final class PackedLightSources
+{
+    public static final PackedLightSources EMPTY = new Builder(0, FalloffCurve.LINEAR).build();
+
+    private final FalloffCurve falloff;
+    private final int size;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final int[] luminance;
+    private final Long2IntOpenHashMap cells;
+    private final int[] cellStart;
+
+    private PackedLightSources(FalloffCurve falloff, int size, double[] x, double[] y, double[] z, int[] luminance, Long2IntOpenHashMap cells,
+                               int[] cellStart)
+    {
+        this.falloff = falloff;
+        this.size = size;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.luminance = luminance;
+        this.cells = cells;
+        this.cellStart = cellStart;
+    }
+
+    /**
+     * Returns the number of packed light sources.
+     *
+     * @return the number of lit light sources
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Returns the falloff curve of the light sources.
+     *
+     * @return the falloff curve
+     */
+    public @NotNull FalloffCurve getFalloff()
+    {
+        return this.falloff;
+    }
+
+    /**
+     * Returns the dynamic light level at the specified block, only looking at the light sources able to reach it.
+     *
+     * @param blockX the block X coordinate
+     * @param blockY the block Y coordinate
+     * @param blockZ the block Z coordinate
+     * @return the dynamic light level
+     */
+    public double getDynamicLightLevel(int blockX, int blockY, int blockZ)
+    {
+        double centerX = blockX + 0.5;
+        double centerY = blockY + 0.5;
+        double centerZ = blockZ + 0.5;
+        int minX = PackedPositions.floor(centerX - DynamicLightMath.MAX_RADIUS) >> 4;
+        int minY = PackedPositions.floor(centerY - DynamicLightMath.MAX_RADIUS) >> 4;
+        int minZ = PackedPositions.floor(centerZ - DynamicLightMath.MAX_RADIUS) >> 4;
+        int maxX = PackedPositions.floor(centerX + DynamicLightMath.MAX_RADIUS) >> 4;
+        int maxY = PackedPositions.floor(centerY + DynamicLightMath.MAX_RADIUS) >> 4;
+        int maxZ = PackedPositions.floor(centerZ + DynamicLightMath.MAX_RADIUS) >> 4;
+
+        double result = 0;
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellY = minY; cellY <= maxY; cellY++) {
+                for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                    int cell = this.cells.get(PackedPositions.asLong(cellX, cellY, cellZ));
+                    if (cell == -1)
+                        continue;
+
+                    for (int i = this.cellStart[cell], end = this.cellStart[cell + 1]; i < end; i++) {
+                        double dx = centerX - this.x[i];
+                        double dy = centerY - this.y[i];
+                        double dz = centerZ - this.z[i];
+                        double distanceSquared = dx * dx + dy * dy + dz * dz;
+                        double lightLevel = this.falloff.getLightLevel(this.luminance[i], distanceSquared);
+                        if (lightLevel > result)
+                            result = lightLevel;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the light of the light sources able to reach the specified chunk section to its volume.
+     *
+     * @param sectionX the section X coordinate
+     * @param sectionY the section Y coordinate
+     * @param sectionZ the section Z coordinate
+     * @param volume the volume to fill, in sixteenths of a light level
+     * @return {@code true} if any block of the section is lit, else {@code false}
+     */
+    boolean fillVolume(int sectionX, int sectionY, int sectionZ, @NotNull byte[] volume)
+    {
+        int originX = sectionX << 4;
+        int originY = sectionY << 4;
+        int originZ = sectionZ << 4;
+
+        boolean lit = false;
+        for (int cellX = sectionX - 1; cellX <= sectionX + 1; cellX++) {
+            for (int cellY = sectionY - 1; cellY <= sectionY + 1; cellY++) {
+                for (int cellZ = sectionZ - 1; cellZ <= sectionZ + 1; cellZ++) {
+                    int cell = this.cells.get(PackedPositions.asLong(cellX, cellY, cellZ));
+                    if (cell == -1)
+                        continue;
+
+                    for (int i = this.cellStart[cell], end = this.cellStart[cell + 1]; i < end; i++) {
+                        // Bounds of the blocks whose center is within the effective light radius.
+                        double x = this.x[i] - 0.5;
+                        double y = this.y[i] - 0.5;
+                        double z = this.z[i] - 0.5;
+                        double radius = this.falloff.getEffectiveRadius(this.luminance[i]);
+                        int minX = Math.max(originX, PackedPositions.ceil(x - radius));
+                        int minY = Math.max(originY, PackedPositions.ceil(y - radius));
+                        int minZ = Math.max(originZ, PackedPositions.ceil(z - radius));
+                        int maxX = Math.min(originX + 15, PackedPositions.floor(x + radius));
+                        int maxY = Math.min(originY + 15, PackedPositions.floor(y + radius));
+                        int maxZ = Math.min(originZ + 15, PackedPositions.floor(z + radius));
+
+                        for (int blockY = minY; blockY <= maxY; blockY++) {
+                            double dy = blockY - y;
+                            for (int blockZ = minZ; blockZ <= maxZ; blockZ++) {
+                                double dz = blockZ - z;
+                                double distanceSquaredYZ = dy * dy + dz * dz;
+                                for (int blockX = minX; blockX <= maxX; blockX++) {
+                                    double dx = blockX - x;
+                                    double distanceSquared = dx * dx + distanceSquaredYZ;
+                                    if (distanceSquared > DynamicLightMath.MAX_RADIUS_SQUARED)
+                                        continue;
+
+                                    int value = (int) (Math.min(this.falloff.getLightLevel(this.luminance[i], distanceSquared), 15) * 16.0);
+                                    int index = SectionLightVolumes.getIndex(blockX, blockY, blockZ);
+                                    if (value > (volume[index] & 0xff)) {
+                                        volume[index] = (byte) value;
+                                        lit = true;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return lit;
+    }
+
+    /**
+     * Collects light sources to pack.
+     */
+    public static final class Builder
+    {
+        private final FalloffCurve falloff;
+        private double[] x;
+        private double[] y;
+        private double[] z;
+        private int[] luminance;
+        private int[] sourceCells;
+        private int[] cellSizes;
+        private final Long2IntOpenHashMap cells = new Long2IntOpenHashMap();
+        // Last light source added in each block, and the previous light source added in the block of each light source.
+        private final Long2IntOpenHashMap blocks = new Long2IntOpenHashMap();
+        private int[] previousInBlock;
+        private boolean mergeDuplicates = false;
+        private int size = 0;
+
+        /**
+         * Creates a new builder.
+         *
+         * @param expectedSize the expected number of light sources
+         * @param falloff the falloff curve of the light sources
+         */
+        public Builder(int expectedSize, @NotNull FalloffCurve falloff)
+        {
+            this.falloff = falloff;
+            int capacity = Math.max(expectedSize, 1);
+            this.x = new double[capacity];
+            this.y = new double[capacity];
+            this.z = new double[capacity];
+            this.luminance = new int[capacity];
+            this.sourceCells = new int[capacity];
+            this.cellSizes = new int[capacity];
+            this.previousInBlock = new int[capacity];
+            this.cells.defaultReturnValue(-1);
+            this.blocks.defaultReturnValue(-1);
+        }
+
+        /**
+         * Merges the light sources added afterwards which share their exact position with a light source already added,
+         * keeping the maximum luminance.
+         * <p>
+         * Co-located light sources, like piles of items, are then queried once. As every light source has the same radius,
+         * the light of a light source only contains the light of another one at the same position, so merging never changes a light level.
+         * The light sources at different positions are never merged, even within a block.
+         *
+         * @param mergeDuplicates {@code true} to merge the light sources sharing a position, or {@code false} to keep every light source
+         * @return this builder
+         */
+        public @NotNull Builder mergeDuplicates(boolean mergeDuplicates)
+        {
+            this.mergeDuplicates = mergeDuplicates;
+            return this;
+        }
+
+        /**
+         * Adds a light source, light sources without luminance are ignored.
+         *
+         * @param x the light source X coordinate
+         * @param y the light source Y coordinate
+         * @param z the light source Z coordinate
+         * @param luminance the light source luminance
+         * @return this builder
+         */
+        public @NotNull Builder add(double x, double y, double z, int luminance)
+        {
+            if (luminance <= 0)
+                return this;
+
+            if (this.size == this.x.length)
+                this.grow();
+
+            if (this.mergeDuplicates) {
+                // Walks the light sources of the same block, which share the exact position of the light source if any.
+                long blockPos = PackedPositions.asLong(PackedPositions.floor(x), PackedPositions.floor(y), PackedPositions.floor(z));
+                int last = this.blocks.get(blockPos);
+                for (int i = last; i != -1; i = this.previousInBlock[i]) {
+                    if (x == this.x[i] && y == this.y[i] && z == this.z[i]) {
+                        this.luminance[i] = Math.max(this.luminance[i], luminance);
+                        return this;
+                    }
+                }
+                this.previousInBlock[this.size] = last;
+                this.blocks.put(blockPos, this.size);
+            }
+
+            this.set(this.size, x, y, z, luminance);
+            this.size++;
+            return this;
+        }
+
+        private void set(int i, double x, double y, double z, int luminance)
+        {
+            long cellPos = PackedPositions.sectionOf(x, y, z);
+            int cell = this.cells.get(cellPos);
+            if (cell == -1) {
+                cell = this.cells.size();
+                this.cells.put(cellPos, cell);
+                // The cell sizes are grown on demand, as there are usually fewer cells than light sources.
+                if (cell == this.cellSizes.length)
+                    this.cellSizes = java.util.Arrays.copyOf(this.cellSizes, cell * 2);
+            }
+            this.cellSizes[cell]++;
+
+            this.x[i] = x;
+            this.y[i] = y;
+            this.z[i] = z;
+            this.luminance[i] = luminance;
+            this.sourceCells[i] = cell;
+        }
+
+        /**
+         * Builds the packed light sources.
+         *
+         * @return the packed light sources
+         */
+        public @NotNull PackedLightSources build()
+        {
+            // Counting sort by cell, so each cell is a contiguous range of the arrays.
+            int cellsCount = this.cells.size();
+            int[] cellStart = new int[cellsCount + 1];
+            for (int cell = 0; cell < cellsCount; cell++) {
+                cellStart[cell + 1] = cellStart[cell] + this.cellSizes[cell];
+            }
+
+            int[] cursor = new int[cellsCount];
+            System.arraycopy(cellStart, 0, cursor, 0, cellsCount);
+            double[] x = new double[this.size];
+            double[] y = new double[this.size];
+            double[] z = new double[this.size];
+            int[] luminance = new int[this.size];
+            for (int i = 0; i < this.size; i++) {
+                int target = cursor[this.sourceCells[i]]++;
+                x[target] = this.x[i];
+                y[target] = this.y[i];
+                z[target] = this.z[i];
+                luminance[target] = this.luminance[i];
+            }
+
+            return new PackedLightSources(this.falloff, this.size, x, y, z, luminance, new Long2IntOpenHashMap(this.cells), cellStart);
+        }
+
+        private void grow()
+        {
+            int capacity = this.x.length * 2;
+            this.x = java.util.Arrays.copyOf(this.x, capacity);
+            this.y = java.util.Arrays.copyOf(this.y, capacity);
+            this.z = java.util.Arrays.copyOf(this.z, capacity);
+            this.luminance = java.util.Arrays.copyOf(this.luminance, capacity);
+            this.sourceCells = java.util.Arrays.copyOf(this.sourceCells, capacity);
+            this.previousInBlock = java.util.Arrays.copyOf(this.previousInBlock, capacity);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+/**
+ * Packs block and chunk section positions into a long, with the same layout as Minecraft's {@code BlockPos#asLong},
+ * and chunk positions with the same layout as {@code ChunkPos#asLong}.
+ */
+public final class PackedPositions
+{
+    private static final int PACKED_X_LENGTH = 26;
+    private static final int PACKED_Z_LENGTH = PACKED_X_LENGTH;
+    private static final int PACKED_Y_LENGTH = 64 - PACKED_X_LENGTH - PACKED_Z_LENGTH;
+    private static final long PACKED_X_MASK = (1L << PACKED_X_LENGTH) - 1L;
+    private static final long PACKED_Y_MASK = (1L << PACKED_Y_LENGTH) - 1L;
+    private static final long PACKED_Z_MASK = (1L << PACKED_Z_LENGTH) - 1L;
+    private static final int Z_OFFSET = PACKED_Y_LENGTH;
+    private static final int X_OFFSET = PACKED_Y_LENGTH + PACKED_Z_LENGTH;
+
+    private PackedPositions()
+    {
+        throw new UnsupportedOperationException("PackedPositions only contains static definitions.");
+    }
+
+    /**
+     * Packs the position.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the packed position
+     */
+    public static long asLong(int x, int y, int z)
+    {
+        return ((long) x & PACKED_X_MASK) << X_OFFSET | ((long) y & PACKED_Y_MASK) | ((long) z & PACKED_Z_MASK) << Z_OFFSET;
+    }
+
+    /**
+     * Returns the X coordinate of the packed position.
+     *
+     * @param packedPos the packed position
+     * @return the X coordinate
+     */
+    public static int getX(long packedPos)
+    {
+        return (int) (packedPos << 64 - X_OFFSET - PACKED_X_LENGTH >> 64 - PACKED_X_LENGTH);
+    }
+
+    /**
+     * Returns the Y coordinate of the packed position.
+     *
+     * @param packedPos the packed position
+     * @return the Y coordinate
+     */
+    public static int getY(long packedPos)
+    {
+        return (int) (packedPos << 64 - PACKED_Y_LENGTH >> 64 - PACKED_Y_LENGTH);
+    }
+
+    /**
+     * Returns the Z coordinate of the packed position.
+     *
+     * @param packedPos the packed position
+     * @return the Z coordinate
+     */
+    public static int getZ(long packedPos)
+    {
+        return (int) (packedPos << 64 - Z_OFFSET - PACKED_Z_LENGTH >> 64 - PACKED_Z_LENGTH);
+    }
+
+    /**
+     * Returns the packed position of the chunk section containing the specified point.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the packed chunk section position
+     */
+    public static long sectionOf(double x, double y, double z)
+    {
+        return asLong(floor(x) >> 4, floor(y) >> 4, floor(z) >> 4);
+    }
+
+    /**
+     * Returns the packed position of the chunk containing the specified point.
+     *
+     * @param x the X coordinate
+     * @param z the Z coordinate
+     * @return the packed chunk position
+     */
+    public static long chunkOf(double x, double z)
+    {
+        return ((long) (floor(x) >> 4) & 0xffffffffL) | ((long) (floor(z) >> 4) & 0xffffffffL) << 32;
+    }
+
+    /**
+     * Returns the largest integer lower or equal to the value.
+     *
+     * @param value the value
+     * @return the floored value
+     */
+    public static int floor(double value)
+    {
+        int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+
+    /**
+     * Returns the smallest integer greater or equal to the value.
+     *
+     * @param value the value
+     * @return the ceiled value
+     */
+    public static int ceil(double value)
+    {
+        int i = (int) value;
+        return value > i ? i + 1 : i;
+    }
+}
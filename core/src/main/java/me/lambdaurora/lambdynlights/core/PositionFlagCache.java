@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Caches a boolean flag per packed block position, like whether a block contains a fluid, and counts the hits.
+ * <p>
+ * Clearing the cache keeps its capacity, so a cache cleared at every tick does not allocate once warmed up.
+ */
+public final class PositionFlagCache
+{
+    /**
+     * Returned by {@link #get(long)} when the flag of the position is not cached.
+     */
+    public static final byte UNKNOWN = -1;
+    /**
+     * Returned by {@link #get(long)} when the flag of the position is cached and not set.
+     */
+    public static final byte UNSET = 0;
+    /**
+     * Returned by {@link #get(long)} when the flag of the position is cached and set.
+     */
+    public static final byte SET = 1;
+
+    private final Long2ByteOpenHashMap flags = new Long2ByteOpenHashMap();
+    private long hits = 0;
+    private long misses = 0;
+
+    public PositionFlagCache()
+    {
+        this.flags.defaultReturnValue(UNKNOWN);
+    }
+
+    /**
+     * Returns the cached flag of the specified position.
+     *
+     * @param pos the packed block position
+     * @return {@link #SET}, {@link #UNSET}, or {@link #UNKNOWN} if the flag is not cached
+     */
+    public byte get(long pos)
+    {
+        byte flag = this.flags.get(pos);
+        if (flag == UNKNOWN)
+            this.misses++;
+        else
+            this.hits++;
+        return flag;
+    }
+
+    /**
+     * Returns the flag of the specified position, loading and caching it if it is not cached.
+     *
+     * @param pos the packed block position
+     * @param loader the loader of the flag of a packed block position
+     * @return the flag
+     */
+    public boolean get(long pos, @NotNull LongPredicate loader)
+    {
+        byte flag = this.get(pos);
+        if (flag != UNKNOWN)
+            return flag == SET;
+
+        boolean loaded = loader.test(pos);
+        this.put(pos, loaded);
+        return loaded;
+    }
+
+    /**
+     * Caches the flag of the specified position.
+     *
+     * @param pos the packed block position
+     * @param flag the flag
+     */
+    public void put(long pos, boolean flag)
+    {
+        this.flags.put(pos, flag ? SET : UNSET);
+    }
+
+    /**
+     * Clears the cached flags.
+     */
+    public void clear()
+    {
+        this.flags.clear();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups which were not cached.
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * Returns the ratio of lookups answered from the cache.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate()
+    {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0.0 : this.hits / (double) total;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Spreads the chunk section rebuilds over several frames, the sections closest to the camera first.
+ * <p>
+ * The sections behind the camera are penalized. This is a forward hemisphere heuristic using the camera look vector,
+ * not a frustum test, so it stays cheap and does not depend on the field of view.
+ * <p>
+ * Each frame only releases a limited number of sections, within a time budget.
+ * Only the best sections within that budget are selected, the other ones are not sorted.
+ * A section deferred for too many frames is released regardless of the budget, so it never starves.
+ */
+public final class RebuildScheduler
+{
+    /**
+     * Number of frames after which a deferred section is released regardless of the budget.
+     */
+    public static final int MAX_DELAY_FRAMES = 40;
+    // Radius of the sphere enclosing a section, a section is in the forward hemisphere if any part of that sphere is in front of the camera.
+    private static final double SECTION_RADIUS = 8.0 * Math.sqrt(3.0);
+    private static final double BEHIND_CAMERA_PENALTY = 4.0;
+
+    private final Long2IntOpenHashMap pending = new Long2IntOpenHashMap();
+    private long[] overdue = new long[64];
+    // Max-heap of the best sections of the frame, by priority, the lowest priority being released first.
+    private long[] heapPositions = new long[64];
+    private double[] heapPriorities = new double[64];
+    private int frame = 0;
+
+    /**
+     * Queues the rebuild of the chunk section, a section already queued keeps its age.
+     *
+     * @param sectionPos the packed chunk section position
+     */
+    public void enqueue(long sectionPos)
+    {
+        if (!this.pending.containsKey(sectionPos))
+            this.pending.put(sectionPos, this.frame);
+    }
+
+    /**
+     * Returns the number of sections waiting to be released.
+     *
+     * @return the number of deferred sections
+     */
+    public int getPendingCount()
+    {
+        return this.pending.size();
+    }
+
+    /**
+     * Drops every queued section.
+     */
+    public void clear()
+    {
+        this.pending.clear();
+    }
+
+    /**
+     * Releases the queued sections with the highest priority, within the frame budget.
+     * <p>
+     * The overdue sections are released first, regardless of the budget.
+     *
+     * @param cameraX the camera X coordinate
+     * @param cameraY the camera Y coordinate
+     * @param cameraZ the camera Z coordinate
+     * @param lookX the X component of the camera look vector
+     * @param lookY the Y component of the camera look vector
+     * @param lookZ the Z component of the camera look vector
+     * @param maxSections the maximum number of sections to release
+     * @param maxNanos the maximum time spent releasing sections, in nanoseconds
+     * @param importantSections the number of released sections to mark as important
+     * @param sink the sink receiving the released sections
+     * @return the number of released sections
+     */
+    public int flush(double cameraX, double cameraY, double cameraZ, double lookX, double lookY, double lookZ,
+                     int maxSections, long maxNanos, int importantSections, @NotNull Sink sink)
+    {
+        this.frame++;
+        int count = this.pending.size();
+        if (count == 0)
+            return 0;
+
+        int budget = Math.min(Math.max(maxSections, 0), count);
+        if (this.overdue.length < count)
+            this.overdue = new long[Math.max(count, this.overdue.length * 2)];
+        if (this.heapPositions.length < budget) {
+            int capacity = Math.max(budget, this.heapPositions.length * 2);
+            this.heapPositions = new long[capacity];
+            this.heapPriorities = new double[capacity];
+        }
+
+        // Selects the best sections within the budget in O(n log budget), instead of sorting every pending section.
+        int overdueCount = 0;
+        int heapSize = 0;
+        ObjectIterator<Long2IntMap.Entry> it = this.pending.long2IntEntrySet().fastIterator();
+        while (it.hasNext()) {
+            Long2IntMap.Entry entry = it.next();
+            long sectionPos = entry.getLongKey();
+            if (this.frame - entry.getIntValue() >= MAX_DELAY_FRAMES) {
+                this.overdue[overdueCount++] = sectionPos;
+                continue;
+            }
+            if (budget == 0)
+                continue;
+
+            double priority = getPriority(sectionPos, cameraX, cameraY, cameraZ, lookX, lookY, lookZ);
+            if (heapSize < budget) {
+                this.heapPositions[heapSize] = sectionPos;
+                this.heapPriorities[heapSize] = priority;
+                this.siftUp(heapSize++);
+            } else if (priority < this.heapPriorities[0]) {
+                this.heapPositions[0] = sectionPos;
+                this.heapPriorities[0] = priority;
+                this.siftDown(0, heapSize);
+            }
+        }
+
+        // Sorts the selected sections by increasing priority value, in place.
+        for (int end = heapSize - 1; end > 0; end--) {
+            this.swap(0, end);
+            this.siftDown(0, end);
+        }
+
+        int released = 0;
+        for (int i = 0; i < overdueCount; i++) {
+            long sectionPos = this.overdue[i];
+            sink.rebuild(sectionPos, false);
+            this.pending.remove(sectionPos);
+            released++;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < heapSize; i++) {
+            if (released >= maxSections || System.nanoTime() - start >= maxNanos)
+                break;
+
+            long sectionPos = this.heapPositions[i];
+            sink.rebuild(sectionPos, i < importantSections);
+            this.pending.remove(sectionPos);
+            released++;
+        }
+        return released;
+    }
+
+    // Lower is released first: the squared distance to the camera, penalized behind the camera.
+    private static double getPriority(long sectionPos, double cameraX, double cameraY, double cameraZ, double lookX, double lookY, double lookZ)
+    {
+        double dx = (PackedPositions.getX(sectionPos) << 4) + 8.0 - cameraX;
+        double dy = (PackedPositions.getY(sectionPos) << 4) + 8.0 - cameraY;
+        double dz = (PackedPositions.getZ(sectionPos) << 4) + 8.0 - cameraZ;
+        double priority = dx * dx + dy * dy + dz * dz;
+        if (dx * lookX + dy * lookY + dz * lookZ < -SECTION_RADIUS)
+            priority *= BEHIND_CAMERA_PENALTY;
+        return priority;
+    }
+
+    private void siftUp(int i)
+    {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.heapPriorities[parent] >= this.heapPriorities[i])
+                return;
+            this.swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int size)
+    {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && this.heapPriorities[left] > this.heapPriorities[largest])
+                largest = left;
+            if (right < size && this.heapPriorities[right] > this.heapPriorities[largest])
+                largest = right;
+            if (largest == i)
+                return;
+            this.swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b)
+    {
+        long position = this.heapPositions[a];
+        this.heapPositions[a] = this.heapPositions[b];
+        this.heapPositions[b] = position;
+        double priority = this.heapPriorities[a];
+        this.heapPriorities[a] = this.heapPriorities[b];
+        this.heapPriorities[b] = priority;
+    }
+
+    /**
+     * Receives the sections released by the scheduler.
+     */
+    @FunctionalInterface
+    public interface Sink
+    {
+        /**
+         * Rebuilds the chunk section.
+         *
+         * @param sectionPos the packed chunk section position
+         * @param important {@code true} if the section should be rebuilt as soon as possible, else {@code false}
+         */
+        void rebuild(long sectionPos, boolean important);
+    }
+}
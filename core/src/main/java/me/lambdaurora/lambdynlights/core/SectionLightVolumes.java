@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed dynamic light levels of the chunk sections lit by dynamic light sources.
+ * <p>
+ * Each volume stores the 16x16x16 light levels of a section in sixteenths of a light level,
+ * which is the precision kept in the lightmap coordinates.
+ * Volumes are never modified once computed, so they can be shared with the published {@link LightSnapshot}s.
+ * <p>
+ * An outdated volume is kept until it is rebuilt, so only the sections whose light levels actually changed are rebuilt.
+ * <p>
+ * The volumes are split into shards, which are shared with the published snapshot and copied on write,
+ * so a publication only copies the shards whose volumes changed, and nothing if no volume changed.
+ */
+public final class SectionLightVolumes
+{
+    private static final int VOLUME_SIZE = 16 * 16 * 16;
+    private static final int SHARD_BITS = 7;
+    static final int SHARD_COUNT = 1 << SHARD_BITS;
+
+    // A null shard has no volume, so empty shards are never allocated.
+    private Long2ObjectOpenHashMap<byte[]>[] shards = newShards();
+    // Whether the shards array, and each shard, is shared with the published snapshot and must be copied before being modified.
+    private boolean shardsShared = false;
+    private final boolean[] sharedShards = new boolean[SHARD_COUNT];
+    private int size = 0;
+    private final LongOpenHashSet dirtySections = new LongOpenHashSet();
+    // The outdated sections in invalidation order, iterated by index as the set iterators allocate.
+    private final LongArrayList dirtyOrder = new LongArrayList();
+    private byte[] nextVolume;
+
+    /**
+     * Marks the volume of the specified chunk section as outdated.
+     *
+     * @param sectionPos the packed chunk section position
+     */
+    public void invalidate(long sectionPos)
+    {
+        if (this.dirtySections.add(sectionPos))
+            this.dirtyOrder.add(sectionPos);
+    }
+
+    /**
+     * Returns the number of volumes waiting to be rebuilt.
+     *
+     * @return the number of outdated volumes
+     */
+    public int getDirtyCount()
+    {
+        return this.dirtySections.size();
+    }
+
+    /**
+     * Returns whether some volumes are waiting to be rebuilt.
+     *
+     * @return {@code true} if some volumes are outdated, else {@code false}
+     */
+    public boolean isDirty()
+    {
+        return !this.dirtySections.isEmpty();
+    }
+
+    /**
+     * Rebuilds the outdated volumes.
+     *
+     * @param lightSources the packed light sources
+     * @param sink the sink receiving the sections whose light levels changed
+     * @return the number of sections sent to the sink
+     */
+    public int rebuild(@NotNull PackedLightSources lightSources, @NotNull SectionRebuildSink sink)
+    {
+        int rebuilt = 0;
+        for (int i = 0; i < this.dirtyOrder.size(); i++) {
+            long sectionPos = this.dirtyOrder.getLong(i);
+            if (this.nextVolume == null)
+                this.nextVolume = new byte[VOLUME_SIZE];
+
+            byte[] oldVolume = get(this.shards, sectionPos);
+            byte[] newVolume;
+            // An unlit section leaves the volume untouched, so it can be reused for the next section.
+            if (lightSources.fillVolume(PackedPositions.getX(sectionPos), PackedPositions.getY(sectionPos), PackedPositions.getZ(sectionPos), this.nextVolume)) {
+                if (oldVolume != null && Arrays.equals(oldVolume, this.nextVolume)) {
+                    // The light did not change, the published volume is kept and the buffer cleared to be reused.
+                    newVolume = oldVolume;
+                    Arrays.fill(this.nextVolume, (byte) 0);
+                } else {
+                    newVolume = this.nextVolume;
+                    this.getWritableShard(sectionPos).put(sectionPos, newVolume);
+                    if (oldVolume == null)
+                        this.size++;
+                    this.nextVolume = null;
+                }
+            } else {
+                newVolume = null;
+                if (oldVolume != null) {
+                    this.getWritableShard(sectionPos).remove(sectionPos);
+                    this.size--;
+                }
+            }
+
+            if (levelsDiffer(oldVolume, newVolume)) {
+                sink.scheduleRebuild(sectionPos);
+                rebuilt++;
+            }
+        }
+        this.dirtySections.clear();
+        this.dirtyOrder.clear();
+        return rebuilt;
+    }
+
+    /**
+     * Clears every volume, and sends every lit or outdated section to the sink so their meshes lose the dynamic light.
+     *
+     * @param sink the sink receiving the sections to rebuild
+     * @return the number of sections sent to the sink
+     */
+    public int clear(@NotNull SectionRebuildSink sink)
+    {
+        int cleared = 0;
+        for (Long2ObjectOpenHashMap<byte[]> volumes : this.shards) {
+            if (volumes == null)
+                continue;
+            LongIterator it = volumes.keySet().iterator();
+            while (it.hasNext()) {
+                sink.scheduleRebuild(it.nextLong());
+                cleared++;
+            }
+        }
+        for (int i = 0; i < this.dirtyOrder.size(); i++) {
+            long sectionPos = this.dirtyOrder.getLong(i);
+            if (get(this.shards, sectionPos) == null) {
+                sink.scheduleRebuild(sectionPos);
+                cleared++;
+            }
+        }
+
+        // The published shards are left untouched.
+        this.shards = newShards();
+        this.shardsShared = false;
+        Arrays.fill(this.sharedShards, false);
+        this.size = 0;
+        this.dirtySections.clear();
+        this.dirtyOrder.clear();
+        return cleared;
+    }
+
+    /**
+     * Returns the number of lit sections.
+     *
+     * @return the number of volumes
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Returns whether some volumes changed since the last {@link #publishShards()}.
+     *
+     * @return {@code true} if the volumes changed, else {@code false}
+     */
+    boolean hasChanges()
+    {
+        return !this.shardsShared;
+    }
+
+    /**
+     * Returns the shards to publish, which must not be modified anymore.
+     * The next modifications copy the shards they touch.
+     *
+     * @return the shards of the volumes
+     */
+    @NotNull Long2ObjectOpenHashMap<byte[]>[] publishShards()
+    {
+        if (!this.shardsShared) {
+            this.shardsShared = true;
+            Arrays.fill(this.sharedShards, true);
+        }
+        return this.shards;
+    }
+
+    private @NotNull Long2ObjectOpenHashMap<byte[]> getWritableShard(long sectionPos)
+    {
+        if (this.shardsShared) {
+            this.shards = this.shards.clone();
+            this.shardsShared = false;
+        }
+
+        int shard = getShardIndex(sectionPos);
+        Long2ObjectOpenHashMap<byte[]> volumes = this.shards[shard];
+        if (volumes == null) {
+            volumes = new Long2ObjectOpenHashMap<>();
+            this.shards[shard] = volumes;
+        } else if (this.sharedShards[shard]) {
+            volumes = new Long2ObjectOpenHashMap<>(volumes);
+            this.shards[shard] = volumes;
+        }
+        this.sharedShards[shard] = false;
+        return volumes;
+    }
+
+    /**
+     * Returns the volume of the specified chunk section.
+     *
+     * @param shards the shards of the volumes
+     * @param sectionPos the packed chunk section position
+     * @return the volume, or {@code null} if the section is not lit
+     */
+    static @Nullable byte[] get(@NotNull Long2ObjectOpenHashMap<byte[]>[] shards, long sectionPos)
+    {
+        Long2ObjectOpenHashMap<byte[]> volumes = shards[getShardIndex(sectionPos)];
+        return volumes == null ? null : volumes.get(sectionPos);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static @NotNull Long2ObjectOpenHashMap<byte[]>[] newShards()
+    {
+        return new Long2ObjectOpenHashMap[SHARD_COUNT];
+    }
+
+    // The high bits of the mixed hash are used, as the shards hash their keys with the low bits.
+    private static int getShardIndex(long sectionPos)
+    {
+        return (int) (HashCommon.mix(sectionPos) >>> (64 - SHARD_BITS));
+    }
+
+    /**
+     * Returns whether two volumes have different light levels, ignoring the sixteenths of a light level.
+     *
+     * @param oldVolume the old volume, {@code null} if unlit
+     * @param newVolume the new volume, {@code null} if unlit
+     * @return {@code true} if a light level changed, else {@code false}
+     */
+    static boolean levelsDiffer(@Nullable byte[] oldVolume, @Nullable byte[] newVolume)
+    {
+        if (oldVolume == newVolume)
+            return false;
+        if (oldVolume == null || newVolume == null) {
+            byte[] volume = oldVolume == null ? newVolume : oldVolume;
+            for (int i = 0; i < VOLUME_SIZE; i++) {
+                if ((volume[i] & 0xf0) != 0)
+                    return true;
+            }
+            return false;
+        }
+
+        for (int i = 0; i < VOLUME_SIZE; i++) {
+            if (((oldVolume[i] ^ newVolume[i]) & 0xf0) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    static int getIndex(int x, int y, int z)
+    {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+}
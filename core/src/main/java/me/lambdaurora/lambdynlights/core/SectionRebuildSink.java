@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+/**
+ * Receives the chunk sections whose dynamic lighting changed and need to be rebuilt.
+ */
+@FunctionalInterface
+public interface SectionRebuildSink
+{
+    /**
+     * Sink ignoring every section.
+     */
+    SectionRebuildSink NONE = sectionPos -> {
+    };
+
+    /**
+     * Schedules the rebuild of the chunk section.
+     *
+     * @param sectionPos the packed chunk section position
+     */
+    void scheduleRebuild(long sectionPos);
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceList;
+import it.unimi.dsi.fastutil.objects.ReferenceLists;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reverse index of the light sources lighting each chunk section, kept up to date by the {@link SectionTracker}s.
+ * <p>
+ * Each section holds a small list of distinct light sources, which never shrinks,
+ * and the lists of the sections which are not lit anymore are pooled, as light sources keep entering and leaving sections.
+ *
+ * @param <S> the type of the light sources
+ */
+public final class SectionSourceIndex<S>
+{
+    private static final int MAX_POOLED_LISTS = 256;
+
+    private final Long2ObjectOpenHashMap<ReferenceArrayList<S>> sources = new Long2ObjectOpenHashMap<>();
+    private final ObjectArrayList<ReferenceArrayList<S>> pooledLists = new ObjectArrayList<>();
+
+    /**
+     * Adds the light source to the sources lighting the section.
+     *
+     * @param sectionPos the packed chunk section position
+     * @param source the light source
+     */
+    public void add(long sectionPos, @NotNull S source)
+    {
+        ReferenceArrayList<S> sectionSources = this.sources.get(sectionPos);
+        if (sectionSources == null) {
+            sectionSources = this.pooledLists.isEmpty() ? new ReferenceArrayList<>(4) : this.pooledLists.pop();
+            this.sources.put(sectionPos, sectionSources);
+        } else if (sectionSources.indexOf(source) != -1) {
+            return;
+        }
+        sectionSources.add(source);
+    }
+
+    /**
+     * Removes the light source from the sources lighting the section.
+     *
+     * @param sectionPos the packed chunk section position
+     * @param source the light source
+     */
+    public void remove(long sectionPos, @NotNull S source)
+    {
+        ReferenceArrayList<S> sectionSources = this.sources.get(sectionPos);
+        if (sectionSources == null)
+            return;
+        int i = sectionSources.indexOf(source);
+        if (i == -1)
+            return;
+
+        // The order of the sources does not matter, the last source takes the place of the removed one.
+        int last = sectionSources.size() - 1;
+        sectionSources.set(i, sectionSources.get(last));
+        sectionSources.remove(last);
+        if (last == 0) {
+            this.sources.remove(sectionPos);
+            if (this.pooledLists.size() < MAX_POOLED_LISTS)
+                this.pooledLists.push(sectionSources);
+        }
+    }
+
+    /**
+     * Returns the light sources lighting the section.
+     *
+     * @param sectionPos the packed chunk section position
+     * @return the light sources, which must not be modified
+     */
+    public @NotNull ReferenceList<S> getSources(long sectionPos)
+    {
+        ReferenceArrayList<S> sectionSources = this.sources.get(sectionPos);
+        return sectionSources == null ? ReferenceLists.emptyList() : sectionSources;
+    }
+
+    /**
+     * Returns the number of sections lit by at least one light source.
+     *
+     * @return the number of indexed sections
+     */
+    public int size()
+    {
+        return this.sources.size();
+    }
+
+    /**
+     * Clears the index.
+     */
+    public void clear()
+    {
+        this.sources.clear();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the chunk sections lit by a single light source, and schedules their rebuild when the light changes.
+ * <p>
+ * The lit sections are the sections intersected by the sphere of the effective light radius,
+ * which depends on the luminance and on the falloff curve.
+ * The tracked sections are mirrored in a {@link SectionSourceIndex}.
+ * <p>
+ * The tracked sections are double-buffered in small arrays, so updating a light source does not allocate.
+ * A tracker is only attached to a light source while it emits light, and is pooled once cleared.
+ */
+public final class SectionTracker
+{
+    // A sphere of the maximum radius spans at most 2 sections on each axis.
+    private static final int MAX_SECTIONS = 8;
+
+    private long[] trackedSections = new long[MAX_SECTIONS];
+    private long[] nextSections = new long[MAX_SECTIONS];
+    private int trackedCount = 0;
+    private double prevX;
+    private double prevY;
+    private double prevZ;
+    private int lastLuminance = 0;
+    private double lastRadius = 0;
+
+    /**
+     * Updates a moving light source.
+     * The lit sections are rebuilt if the light source moved further than the minimum delta on any axis, or if its luminance or its effective radius changed.
+     *
+     * @param x the light source X coordinate
+     * @param y the light source Y coordinate
+     * @param z the light source Z coordinate
+     * @param luminance the light source luminance
+     * @param falloff the falloff curve
+     * @param minDelta the minimum movement on an axis to update the light
+     * @param sink the sink receiving the sections to rebuild
+     * @param index the index of the light sources by section
+     * @param source the light source owning this tracker
+     * @param <S> the type of the light sources
+     * @return {@code true} if the light was updated, else {@code false}
+     */
+    public <S> boolean update(double x, double y, double z, int luminance, @NotNull FalloffCurve falloff, double minDelta,
+                              @NotNull SectionRebuildSink sink, @NotNull SectionSourceIndex<S> index, @NotNull S source)
+    {
+        double radius = falloff.getEffectiveRadius(luminance);
+        if (Math.abs(x - this.prevX) <= minDelta && Math.abs(y - this.prevY) <= minDelta && Math.abs(z - this.prevZ) <= minDelta
+                && luminance == this.lastLuminance && radius == this.lastRadius)
+            return false;
+
+        this.prevX = x;
+        this.prevY = y;
+        this.prevZ = z;
+        this.lastLuminance = luminance;
+        this.lastRadius = radius;
+
+        int newCount = 0;
+        if (luminance > 0) {
+            newCount = this.collectSections(x, y, z, radius);
+            for (int i = 0; i < newCount; i++) {
+                long sectionPos = this.nextSections[i];
+                sink.scheduleRebuild(sectionPos);
+                if (!this.removeTracked(sectionPos))
+                    index.add(sectionPos, source);
+            }
+        }
+
+        // Schedules the rebuild of the sections which are not lit anymore.
+        for (int i = 0; i < this.trackedCount; i++) {
+            long sectionPos = this.trackedSections[i];
+            sink.scheduleRebuild(sectionPos);
+            index.remove(sectionPos, source);
+        }
+
+        long[] previousSections = this.trackedSections;
+        this.trackedSections = this.nextSections;
+        this.nextSections = previousSections;
+        this.trackedCount = newCount;
+        return true;
+    }
+
+    /**
+     * Updates a light source which never moves, the lit sections are only rebuilt if its luminance or its falloff changed.
+     *
+     * @param blockX the light source block X coordinate
+     * @param blockY the light source block Y coordinate
+     * @param blockZ the light source block Z coordinate
+     * @param luminance the light source luminance
+     * @param falloff the falloff curve
+     * @param sink the sink receiving the sections to rebuild
+     * @param index the index of the light sources by section
+     * @param source the light source owning this tracker
+     * @param <S> the type of the light sources
+     * @return {@code true} if the light was updated, else {@code false}
+     */
+    public <S> boolean updateStatic(int blockX, int blockY, int blockZ, int luminance, @NotNull FalloffCurve falloff,
+                                    @NotNull SectionRebuildSink sink, @NotNull SectionSourceIndex<S> index, @NotNull S source)
+    {
+        return this.update(blockX + 0.5, blockY + 0.5, blockZ + 0.5, luminance, falloff, Double.POSITIVE_INFINITY, sink, index, source);
+    }
+
+    /**
+     * Schedules the rebuild of every tracked section.
+     *
+     * @param sink the sink receiving the sections to rebuild
+     */
+    public void scheduleRebuild(@NotNull SectionRebuildSink sink)
+    {
+        for (int i = 0; i < this.trackedCount; i++) {
+            sink.scheduleRebuild(this.trackedSections[i]);
+        }
+    }
+
+    /**
+     * Schedules the rebuild of every tracked section and stops tracking them, once the light source is removed.
+     *
+     * @param sink the sink receiving the sections to rebuild
+     * @param index the index of the light sources by section
+     * @param source the light source owning this tracker
+     * @param <S> the type of the light sources
+     */
+    public <S> void untrack(@NotNull SectionRebuildSink sink, @NotNull SectionSourceIndex<S> index, @NotNull S source)
+    {
+        for (int i = 0; i < this.trackedCount; i++) {
+            long sectionPos = this.trackedSections[i];
+            sink.scheduleRebuild(sectionPos);
+            index.remove(sectionPos, source);
+        }
+        this.trackedCount = 0;
+        this.reset();
+    }
+
+    /**
+     * Forgets every tracked section without scheduling their rebuild, once the whole section index is cleared.
+     */
+    public void clear()
+    {
+        this.trackedCount = 0;
+        this.reset();
+    }
+
+    /**
+     * Resets the last luminance, so the next update rebuilds the lit sections.
+     */
+    public void reset()
+    {
+        this.lastLuminance = 0;
+        this.lastRadius = 0;
+    }
+
+    /**
+     * Returns the last luminance of the light source.
+     *
+     * @return the last luminance
+     */
+    public int getLastLuminance()
+    {
+        return this.lastLuminance;
+    }
+
+    /**
+     * Returns the number of tracked sections.
+     *
+     * @return the number of tracked sections
+     */
+    public int getTrackedCount()
+    {
+        return this.trackedCount;
+    }
+
+    /**
+     * Returns the tracked section at the specified index.
+     *
+     * @param i the index, lower than {@link #getTrackedCount()}
+     * @return the packed chunk section position
+     */
+    public long getTrackedSection(int i)
+    {
+        return this.trackedSections[i];
+    }
+
+    private boolean removeTracked(long sectionPos)
+    {
+        for (int i = 0; i < this.trackedCount; i++) {
+            if (this.trackedSections[i] == sectionPos) {
+                this.trackedSections[i] = this.trackedSections[--this.trackedCount];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Collects the sections intersected by the sphere of the specified radius into the next sections buffer.
+    private int collectSections(double x, double y, double z, double radius)
+    {
+        // Light levels are computed at the block centers, so only the box of the section block centers matters.
+        double cx = x - 0.5;
+        double cy = y - 0.5;
+        double cz = z - 0.5;
+        int minX = PackedPositions.ceil(cx - radius) >> 4;
+        int minY = PackedPositions.ceil(cy - radius) >> 4;
+        int minZ = PackedPositions.ceil(cz - radius) >> 4;
+        int maxX = PackedPositions.floor(cx + radius) >> 4;
+        int maxY = PackedPositions.floor(cy + radius) >> 4;
+        int maxZ = PackedPositions.floor(cz + radius) >> 4;
+        int capacity = (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        if (this.nextSections.length < capacity)
+            this.nextSections = new long[capacity];
+        double radiusSquared = radius * radius;
+
+        int count = 0;
+        for (int sectionX = minX; sectionX <= maxX; sectionX++) {
+            double dx = distanceToSection(cx, sectionX);
+            for (int sectionY = minY; sectionY <= maxY; sectionY++) {
+                double dy = distanceToSection(cy, sectionY);
+                for (int sectionZ = minZ; sectionZ <= maxZ; sectionZ++) {
+                    double dz = distanceToSection(cz, sectionZ);
+                    if (dx * dx + dy * dy + dz * dz <= radiusSquared)
+                        this.nextSections[count++] = PackedPositions.asLong(sectionX, sectionY, sectionZ);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static double distanceToSection(double value, int section)
+    {
+        int min = section << 4;
+        if (value < min)
+            return min - value;
+        if (value > min + 15)
+            return value - (min + 15);
+        return 0;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers the identity of the stack and of the item in each slot of an equipment,
+ * so a change is detected by comparing references instead of comparing the stacks.
+ */
+public final class SlotIdentityCache
+{
+    private final Object[] stacks;
+    private final Object[] items;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param slots the number of slots
+     */
+    public SlotIdentityCache(int slots)
+    {
+        this.stacks = new Object[slots];
+        this.items = new Object[slots];
+    }
+
+    /**
+     * Records the stack and the item of the specified slot.
+     *
+     * @param slot the slot
+     * @param stack the stack in the slot
+     * @param item the item of the stack
+     * @return {@code true} if the stack or the item changed since the last call, else {@code false}
+     */
+    public boolean set(int slot, @NotNull Object stack, @NotNull Object item)
+    {
+        if (stack == this.stacks[slot] && item == this.items[slot])
+            return false;
+        this.stacks[slot] = stack;
+        this.items[slot] = item;
+        return true;
+    }
+
+    /**
+     * Returns the last recorded stack of the specified slot.
+     *
+     * @param slot the slot
+     * @return the stack, or {@code null} if none was recorded
+     */
+    public @Nullable Object getStack(int slot)
+    {
+        return this.stacks[slot];
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the number of slots
+     */
+    public int size()
+    {
+        return this.stacks.length;
+    }
+}
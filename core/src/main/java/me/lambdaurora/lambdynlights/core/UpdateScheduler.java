@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+/**
+ * Spreads the updates of the light sources evenly over an update period, in round-robin.
+ * <p>
+ * The light sources are identified by their slot in a list. Each frame updates the share of the slots matching the time
+ * elapsed since the previous frame, so every light source is updated once per period, its deadline being its previous update
+ * plus the period, and the work of each frame stays flat instead of updating every light source at once.
+ */
+public final class UpdateScheduler
+{
+    private long lastNanos = 0;
+    private boolean started = false;
+    private double credit = 0;
+    private int cursor = 0;
+
+    /**
+     * Returns the number of slots to update this frame, which are then taken with {@link #next(int)}.
+     *
+     * @param nowNanos the current time in nanoseconds
+     * @param periodNanos the period in which every slot is updated once, in nanoseconds
+     * @param count the number of slots
+     * @return the number of slots to update, at most {@code count}
+     */
+    public int schedule(long nowNanos, long periodNanos, int count)
+    {
+        long elapsed = this.started ? nowNanos - this.lastNanos : 0;
+        this.lastNanos = nowNanos;
+        this.started = true;
+        if (count == 0) {
+            this.credit = 0;
+            return 0;
+        }
+
+        // The fractional part of the share is carried over, so slow frame rates and small sets still reach every slot.
+        this.credit += periodNanos <= 0 ? count : count * (double) elapsed / periodNanos;
+        int slots = (int) Math.min(this.credit, count);
+        this.credit = Math.min(this.credit - slots, 1.0);
+        return slots;
+    }
+
+    /**
+     * Returns the next slot to update and advances the round-robin cursor.
+     *
+     * @param count the number of slots, which must be positive
+     * @return the slot to update, lower than {@code count}
+     */
+    public int next(int count)
+    {
+        if (this.cursor >= count)
+            this.cursor = 0;
+        return this.cursor++;
+    }
+
+    /**
+     * Restarts the round-robin from the first slot, and forgets the time of the previous frame.
+     */
+    public void reset()
+    {
+        this.started = false;
+        this.credit = 0;
+        this.cursor = 0;
+    }
+}
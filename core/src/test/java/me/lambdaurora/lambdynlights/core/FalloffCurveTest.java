@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FalloffCurveTest
+{
+    // The section volumes store sixteenths of a light level, so a smaller error never changes them by more than one step.
+    private static final double VOLUME_STEP = 1.0 / 16.0;
+    private static final int STEPS = 20000;
+
+    @Test
+    public void linearTableMatchesTheFormula()
+    {
+        for (int luminance = 1; luminance <= 15; luminance++) {
+            for (int step = 0; step <= STEPS; step++) {
+                double distance = DynamicLightMath.MAX_RADIUS * step / STEPS;
+                // The formula of the light level before the falloff curves.
+                double expected = (1.0 - distance / DynamicLightMath.MAX_RADIUS) * luminance;
+                assertEquals("luminance " + luminance + " at " + distance, expected,
+                        FalloffCurve.LINEAR.getLightLevel(luminance, distance * distance), VOLUME_STEP);
+            }
+            assertEquals(luminance, FalloffCurve.LINEAR.getLightLevel(luminance, 0), 0);
+            assertEquals(0, FalloffCurve.LINEAR.getLightLevel(luminance, DynamicLightMath.MAX_RADIUS_SQUARED + 0.01), 0);
+        }
+    }
+
+    @Test
+    public void effectiveRadiusEndsTheLight()
+    {
+        for (FalloffCurve curve : FalloffCurve.values()) {
+            for (int luminance = 1; luminance <= 15; luminance++) {
+                double radius = curve.getEffectiveRadius(luminance);
+                String name = curve + " with luminance " + luminance;
+                assertTrue(name + " has no radius", radius > 0 && radius <= DynamicLightMath.MAX_RADIUS);
+
+                // Just inside the radius the light is kept, and from the radius on it rounds to 0 in the section volumes.
+                double inside = Math.max(radius * radius - 1.0 / 64.0, 0);
+                assertTrue(name + " is not lit inside its radius", curve.getLightLevel(luminance, inside) >= VOLUME_STEP);
+                for (int step = 0; step <= STEPS; step++) {
+                    double distance = radius + (DynamicLightMath.MAX_RADIUS + 1 - radius) * step / STEPS;
+                    assertEquals(name + " is lit at " + distance, 0, (int) (curve.getLightLevel(luminance, distance * distance) * 16.0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void curvesNeverIncrease()
+    {
+        for (FalloffCurve curve : FalloffCurve.values()) {
+            double previous = Double.POSITIVE_INFINITY;
+            for (int step = 0; step <= STEPS; step++) {
+                double distance = DynamicLightMath.MAX_RADIUS * step / STEPS;
+                double lightLevel = curve.getLightLevel(15, distance * distance);
+                assertTrue(curve + " increases at " + distance, lightLevel <= previous);
+                previous = lightLevel;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LightEngineTest
+{
+    private static final SectionRebuildSink NO_REBUILD = sectionPos -> {
+    };
+
+    private static final double[][] LIGHT_SOURCES = {
+            {8.5, 70.5, 8.5, 15},
+            {40.2, 64.7, -20.1, 12},
+            {-3.5, 80.1, 30.9, 7}
+    };
+
+    @Test
+    public void clearSendsEveryLitSectionToTheSink()
+    {
+        LightEngine engine = new LightEngine();
+        PackedLightSources.Builder builder = new PackedLightSources.Builder(LIGHT_SOURCES.length, FalloffCurve.LINEAR);
+        for (double[] lightSource : LIGHT_SOURCES) {
+            builder.add(lightSource[0], lightSource[1], lightSource[2], (int) lightSource[3]);
+            forEachNearbySection(lightSource, engine::invalidateSection);
+        }
+        engine.publish(builder.build(), LIGHT_SOURCES.length, NO_REBUILD);
+
+        LightSnapshot snapshot = engine.getSnapshot();
+        LongSet litSections = new LongOpenHashSet();
+        for (double[] lightSource : LIGHT_SOURCES) {
+            forEachNearbySection(lightSource, sectionPos -> {
+                if (isLit(snapshot, sectionPos))
+                    litSections.add(sectionPos);
+            });
+        }
+        assertFalse(litSections.isEmpty());
+        assertEquals(litSections.size(), snapshot.getLitSectionsCount());
+
+        // A section invalidated since the last publication is outdated as well.
+        long pendingSection = PackedPositions.asLong(100, 4, 100);
+        engine.invalidateSection(pendingSection);
+
+        LongSet cleared = new LongOpenHashSet();
+        engine.clear(cleared::add);
+
+        for (long sectionPos : litSections) {
+            assertTrue("lit section " + sectionPos + " was not sent to the sink", cleared.contains(sectionPos));
+        }
+        assertTrue(cleared.contains(pendingSection));
+        assertEquals(litSections.size() + 1, cleared.size());
+
+        engine.publish(PackedLightSources.EMPTY, 0, NO_REBUILD);
+        assertEquals(0, engine.getSnapshot().getLitSectionsCount());
+        assertFalse(engine.isDirty());
+    }
+
+    private static void forEachNearbySection(double[] lightSource, SectionRebuildSink action)
+    {
+        int sectionX = PackedPositions.floor(lightSource[0]) >> 4;
+        int sectionY = PackedPositions.floor(lightSource[1]) >> 4;
+        int sectionZ = PackedPositions.floor(lightSource[2]) >> 4;
+        for (int x = -1; x <= 1; x++) {
+            for (int y = -1; y <= 1; y++) {
+                for (int z = -1; z <= 1; z++) {
+                    action.scheduleRebuild(PackedPositions.asLong(sectionX + x, sectionY + y, sectionZ + z));
+                }
+            }
+        }
+    }
+
+    private static boolean isLit(LightSnapshot snapshot, long sectionPos)
+    {
+        int originX = PackedPositions.getX(sectionPos) << 4;
+        int originY = PackedPositions.getY(sectionPos) << 4;
+        int originZ = PackedPositions.getZ(sectionPos) << 4;
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    if (snapshot.getDynamicLightLevel(originX + x, originY + y, originZ + z) > 0)
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LightSourceSlotsTest
+{
+    private static final LightSourceAccess<Source> ACCESS = new LightSourceAccess<Source>()
+    {
+        @Override
+        public int getSlot(@NotNull Source source)
+        {
+            return source.slot;
+        }
+
+        @Override
+        public void setSlot(@NotNull Source source, int slot)
+        {
+            source.slot = slot;
+        }
+
+        @Override
+        public double getX(@NotNull Source source)
+        {
+            return source.x;
+        }
+
+        @Override
+        public double getY(@NotNull Source source)
+        {
+            return source.y;
+        }
+
+        @Override
+        public double getZ(@NotNull Source source)
+        {
+            return source.z;
+        }
+
+        @Override
+        public int getLuminance(@NotNull Source source)
+        {
+            return source.luminance;
+        }
+
+        @Override
+        public void untrack(@NotNull Source source)
+        {
+            // The light source still owns its slot while it untracks its sections.
+            assertTrue(source.slot >= 0);
+            source.untracked++;
+        }
+    };
+
+    @Test
+    public void removingWhileIteratingKeepsTheSlotsConsistent()
+    {
+        LightSourceSlots<Source> slots = new LightSourceSlots<>(ACCESS);
+        List<Source> sources = addSources(slots, 100, new Random(1));
+        Map<Source, SectionTracker> trackers = getTrackers(slots);
+
+        // Removes every third light source, the light sources moved into a removed slot are visited as well.
+        List<Source> visited = new ArrayList<>();
+        Iterator<Source> it = slots.iterator();
+        while (it.hasNext()) {
+            Source source = it.next();
+            visited.add(source);
+            if (source.id % 3 == 0)
+                it.remove();
+        }
+        assertEquals(sources.size(), visited.size());
+        assertTrue(toMap(visited).keySet().containsAll(sources));
+
+        assertConsistent(slots, trackers);
+        for (Source source : sources) {
+            boolean removed = source.id % 3 == 0;
+            assertEquals(!removed, slots.contains(source));
+            assertEquals(removed ? 1 : 0, source.untracked);
+            if (removed) {
+                assertEquals(-1, source.slot);
+                assertNull(slots.getTracker(source));
+                assertEquals(0, slots.getLuminance(source));
+                assertNull(slots.getAttachment(source));
+            }
+        }
+        assertEquals(66, slots.size());
+    }
+
+    @Test
+    public void removingKeepsTheSlotsConsistent()
+    {
+        Random random = new Random(2);
+        LightSourceSlots<Source> slots = new LightSourceSlots<>(ACCESS);
+        List<Source> sources = addSources(slots, 200, random);
+        Map<Source, SectionTracker> trackers = getTrackers(slots);
+
+        for (int i = 0; i < 150; i++) {
+            Source source = sources.remove(random.nextInt(sources.size()));
+            assertTrue(slots.remove(source));
+            assertFalse(slots.remove(source));
+            assertConsistent(slots, trackers);
+        }
+        assertEquals(sources.size(), slots.size());
+
+        // A removed light source may be added again, with a pooled tracker.
+        Source source = new Source(1000, 0, 64, 0, 15);
+        assertTrue(slots.add(source));
+        assertFalse(slots.add(source));
+        assertNotNull(slots.getTracker(source));
+        assertSame(source, slots.get(source.slot));
+    }
+
+    @Test
+    public void purgingAndSweepingKeepTheSlotsConsistent()
+    {
+        LightSourceSlots<Source> slots = new LightSourceSlots<>(ACCESS);
+        List<Source> sources = addSources(slots, 100, new Random(3));
+        Map<Source, SectionTracker> trackers = getTrackers(slots);
+
+        LongSet chunks = new LongOpenHashSet();
+        chunks.add(PackedPositions.chunkOf(0, 0));
+        chunks.add(PackedPositions.chunkOf(-1, 40));
+        int inChunks = 0;
+        for (Source source : sources) {
+            if (chunks.contains(PackedPositions.chunkOf(source.x, source.z)))
+                inChunks++;
+        }
+        assertTrue(inChunks > 0);
+        assertEquals(inChunks, slots.purgeChunks(chunks));
+        assertConsistent(slots, trackers);
+        for (Source source : sources) {
+            assertEquals(!chunks.contains(PackedPositions.chunkOf(source.x, source.z)), slots.contains(source));
+        }
+
+        slots.nextGeneration();
+        int seen = 0;
+        for (Source source : sources) {
+            if (source.id % 2 == 0 && slots.contains(source)) {
+                slots.markSeen(source);
+                seen++;
+            }
+        }
+        assertEquals(slots.size() - seen, slots.sweep());
+        assertEquals(seen, slots.size());
+        assertConsistent(slots, trackers);
+    }
+
+    @Test
+    public void onlyCollectableLightSourcesArePurgedAndSwept()
+    {
+        LightSourceSlots<Source> slots = new LightSourceSlots<>(ACCESS);
+        Source collectable = new Source(0, 8, 64, 8, 15);
+        Source registered = new Source(1, 9, 64, 9, 15);
+        slots.add(collectable);
+        slots.add(registered, false);
+
+        // Neither is seen by the pass.
+        slots.nextGeneration();
+        assertEquals(1, slots.sweep());
+        assertFalse(slots.contains(collectable));
+        assertTrue(slots.contains(registered));
+
+        slots.add(collectable);
+        LongSet chunks = new LongOpenHashSet();
+        chunks.add(PackedPositions.chunkOf(8, 8));
+        assertEquals(1, slots.purgeChunks(chunks));
+        assertFalse(slots.contains(collectable));
+        assertTrue(slots.contains(registered));
+
+        assertTrue(slots.remove(registered));
+        assertEquals(0, slots.size());
+    }
+
+    @Test
+    public void demotedLightSourcesAreNotPacked()
+    {
+        LightSourceSlots<Source> slots = new LightSourceSlots<>(ACCESS);
+        List<Source> sources = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // The further light sources are less important.
+            Source source = new Source(i, 8 + i * 20, 64, 8, 10);
+            sources.add(source);
+            slots.add(source);
+        }
+        Source favored = sources.get(9);
+
+        slots.applyBudget(3, 0, 64, 0, favored);
+        assertEquals(3, slots.getActiveCount());
+        for (Source source : sources) {
+            boolean active = source.id < 2 || source == favored;
+            assertEquals("light source " + source.id, active, slots.isActive(source));
+            assertEquals(active ? 0 : 1, source.untracked);
+        }
+        assertTrue(slots.isChanged());
+        assertPacked(slots, sources.get(0), sources.get(1), favored);
+        assertFalse(slots.isChanged());
+
+        // New light sources past the budget wait for the next evaluation.
+        Source late = new Source(10, 0, 64, 0, 15);
+        slots.add(late);
+        assertFalse(slots.isActive(late));
+        assertPacked(slots, sources.get(0), sources.get(1), favored);
+
+        // Removing a demoted light source does not shift the demotion of the light source moved into its slot.
+        slots.remove(sources.get(5));
+        assertTrue(slots.isActive(favored));
+        assertPacked(slots, sources.get(0), sources.get(1), favored);
+
+        slots.applyBudget(100, 0, 64, 0, null);
+        assertEquals(slots.size(), slots.getActiveCount());
+        assertEquals(slots.size(), pack(slots).size());
+    }
+
+    private static void assertPacked(LightSourceSlots<Source> slots, Source... expected)
+    {
+        PackedLightSources packed = pack(slots);
+        assertEquals(expected.length, packed.size());
+        for (Source source : expected) {
+            assertTrue(packed.getDynamicLightLevel(PackedPositions.floor(source.x), PackedPositions.floor(source.y), PackedPositions.floor(source.z)) > 0);
+        }
+    }
+
+    private static PackedLightSources pack(LightSourceSlots<Source> slots)
+    {
+        PackedLightSources.Builder builder = new PackedLightSources.Builder(slots.size(), FalloffCurve.LINEAR);
+        slots.pack(builder);
+        return builder.build();
+    }
+
+    // Every stored light source is in its own slot, and kept its side table entries.
+    private static void assertConsistent(LightSourceSlots<Source> slots, Map<Source, SectionTracker> trackers)
+    {
+        int active = 0;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            Source source = slots.get(slot);
+            assertEquals(slot, source.slot);
+            assertTrue(slots.contains(source));
+            assertSame(trackers.get(source), slots.getTracker(source));
+            assertEquals(source.luminance, slots.getLuminance(source));
+            assertSame(source, slots.getAttachment(source));
+            if (slots.isActive(source))
+                active++;
+        }
+        assertEquals(active, slots.getActiveCount());
+    }
+
+    private static List<Source> addSources(LightSourceSlots<Source> slots, int count, Random random)
+    {
+        List<Source> sources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Source source = new Source(i, random.nextDouble() * 64 - 32, 64, random.nextDouble() * 64 - 32, 1 + random.nextInt(15));
+            assertTrue(slots.add(source));
+            slots.setLuminance(source, source.luminance);
+            slots.setAttachment(source, source);
+            sources.add(source);
+        }
+        return sources;
+    }
+
+    private static Map<Source, SectionTracker> getTrackers(LightSourceSlots<Source> slots)
+    {
+        Map<Source, SectionTracker> trackers = new IdentityHashMap<>();
+        for (Source source : slots) {
+            trackers.put(source, slots.getTracker(source));
+        }
+        return trackers;
+    }
+
+    private static Map<Source, Boolean> toMap(List<Source> sources)
+    {
+        Map<Source, Boolean> map = new IdentityHashMap<>();
+        for (Source source : sources) {
+            map.put(source, true);
+        }
+        return map;
+    }
+
+    private static final class Source
+    {
+        private final int id;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final int luminance;
+        private int slot = -1;
+        private int untracked = 0;
+
+        private Source(int id, double x, double y, double z, int luminance)
+        {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.luminance = luminance;
+        }
+    }
+}
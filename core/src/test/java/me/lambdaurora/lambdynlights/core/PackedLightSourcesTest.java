@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackedLightSourcesTest
+{
+    private static final int LIGHT_SOURCES = 2000;
+    private static final int CLUMP_SIZE = 10;
+    private static final int SAMPLES = 20000;
+    // Only light sources sharing a position are merged, so the light levels are the same up to rounding.
+    private static final double MAX_ERROR = 1e-9;
+
+    @Test
+    public void mergingKeepsTheLightLevels()
+    {
+        double[][] lightSources = generateLightSources(new Random(42));
+        for (FalloffCurve falloff : FalloffCurve.values()) {
+            PackedLightSources expected = build(lightSources, falloff, false);
+            PackedLightSources merged = build(lightSources, falloff, true);
+            assertEquals(LIGHT_SOURCES, expected.size());
+            // Half of each clump shares the position of the clump.
+            assertEquals(falloff.toString(), LIGHT_SOURCES - (LIGHT_SOURCES / CLUMP_SIZE) * (CLUMP_SIZE / 2 - 1), merged.size());
+
+            Random random = new Random(falloff.ordinal());
+            for (int i = 0; i < SAMPLES; i++) {
+                int x = random.nextInt(144) - 8;
+                int y = 56 + random.nextInt(32);
+                int z = random.nextInt(144) - 8;
+                assertEquals(falloff + " at " + x + ", " + y + ", " + z,
+                        expected.getDynamicLightLevel(x, y, z), merged.getDynamicLightLevel(x, y, z), MAX_ERROR);
+            }
+        }
+    }
+
+    @Test
+    public void mergingKeepsTheLitSections()
+    {
+        double[][] lightSources = generateLightSources(new Random(7));
+        LightEngine expected = publish(build(lightSources, FalloffCurve.LINEAR, false));
+        LightEngine merged = publish(build(lightSources, FalloffCurve.LINEAR, true));
+
+        LightSnapshot expectedSnapshot = expected.getSnapshot();
+        LightSnapshot mergedSnapshot = merged.getSnapshot();
+        assertEquals(expectedSnapshot.getLitSectionsCount(), mergedSnapshot.getLitSectionsCount());
+        Random random = new Random(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            int x = random.nextInt(144) - 8;
+            int y = 56 + random.nextInt(32);
+            int z = random.nextInt(144) - 8;
+            assertEquals(expectedSnapshot.getDynamicLightLevel(x, y, z), mergedSnapshot.getDynamicLightLevel(x, y, z), MAX_ERROR);
+        }
+    }
+
+    @Test
+    public void mergesDuplicatesOfAnyLightSourceOfTheBlock()
+    {
+        double[][] lightSources = {
+                {8.2, 64.2, 8.2, 6},
+                {8.7, 64.7, 8.7, 4},
+                {8.2, 64.7, 8.2, 9},
+                // Duplicates of the second and third light sources of the block, not of the first one.
+                {8.7, 64.7, 8.7, 12},
+                {8.2, 64.7, 8.2, 3},
+                {8.7, 64.7, 8.7, 2}
+        };
+        PackedLightSources merged = build(lightSources, FalloffCurve.LINEAR, true);
+        assertEquals(3, merged.size());
+
+        // The merged light sources keep the maximum luminance of their duplicates.
+        PackedLightSources expected = build(new double[][]{
+                {8.2, 64.2, 8.2, 6},
+                {8.7, 64.7, 8.7, 12},
+                {8.2, 64.7, 8.2, 9}
+        }, FalloffCurve.LINEAR, false);
+        for (int x = 0; x < 17; x++) {
+            for (int y = 56; y < 73; y++) {
+                for (int z = 0; z < 17; z++) {
+                    assertEquals(expected.getDynamicLightLevel(x, y, z), merged.getDynamicLightLevel(x, y, z), MAX_ERROR);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates clumps of light sources around random points, some of them sharing the exact position of the clump like stacked items.
+     */
+    private static double[][] generateLightSources(Random random)
+    {
+        double[][] lightSources = new double[LIGHT_SOURCES][];
+        for (int clump = 0; clump < LIGHT_SOURCES / CLUMP_SIZE; clump++) {
+            double x = random.nextDouble() * 128;
+            double y = 64 + random.nextDouble() * 16;
+            double z = random.nextDouble() * 128;
+            int luminance = 1 + random.nextInt(15);
+            for (int i = 0; i < CLUMP_SIZE; i++) {
+                double[] lightSource = i < CLUMP_SIZE / 2
+                        ? new double[]{x, y, z, luminance}
+                        : new double[]{x + random.nextDouble() - 0.5, y + random.nextDouble() - 0.5, z + random.nextDouble() - 0.5, 1 + random.nextInt(15)};
+                lightSources[clump * CLUMP_SIZE + i] = lightSource;
+            }
+        }
+        return lightSources;
+    }
+
+    private static PackedLightSources build(double[][] lightSources, FalloffCurve falloff, boolean mergeDuplicates)
+    {
+        PackedLightSources.Builder builder = new PackedLightSources.Builder(lightSources.length, falloff).mergeDuplicates(mergeDuplicates);
+        for (double[] lightSource : lightSources) {
+            builder.add(lightSource[0], lightSource[1], lightSource[2], (int) lightSource[3]);
+        }
+        return builder.build();
+    }
+
+    private static LightEngine publish(PackedLightSources lightSources)
+    {
+        LightEngine engine = new LightEngine();
+        for (int x = -1; x <= 8; x++) {
+            for (int y = 3; y <= 5; y++) {
+                for (int z = -1; z <= 8; z++) {
+                    engine.invalidateSection(PackedPositions.asLong(x, y, z));
+                }
+            }
+        }
+        engine.publish(lightSources, lightSources.size(), sectionPos -> {
+        });
+        return engine;
+    }
+}
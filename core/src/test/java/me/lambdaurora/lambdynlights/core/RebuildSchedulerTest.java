@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RebuildSchedulerTest
+{
+    @Test
+    public void flushReleasesTheClosestSectionsInOrder()
+    {
+        RebuildScheduler scheduler = new RebuildScheduler();
+        LongList queued = new LongArrayList();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            // Every section is in front of the camera, which looks towards +X from the origin.
+            long sectionPos = PackedPositions.asLong(1 + random.nextInt(40), random.nextInt(16) - 8, random.nextInt(80) - 40);
+            scheduler.enqueue(sectionPos);
+            if (!queued.contains(sectionPos))
+                queued.add(sectionPos);
+        }
+
+        LongList released = new LongArrayList();
+        int[] important = {0};
+        int count = scheduler.flush(0, 0, 0, 1, 0, 0, 50, Long.MAX_VALUE, 3, (sectionPos, isImportant) -> {
+            if (isImportant) {
+                assertEquals("only the first released sections are important", released.size(), important[0]);
+                important[0]++;
+            }
+            released.add(sectionPos);
+        });
+
+        assertEquals(50, count);
+        assertEquals(50, released.size());
+        assertEquals(3, important[0]);
+        assertEquals(queued.size() - 50, scheduler.getPendingCount());
+
+        for (int i = 1; i < released.size(); i++) {
+            assertTrue(distanceSquared(released.getLong(i - 1)) <= distanceSquared(released.getLong(i)));
+        }
+        double farthestReleased = distanceSquared(released.getLong(released.size() - 1));
+        for (long sectionPos : queued) {
+            if (!released.contains(sectionPos))
+                assertTrue(distanceSquared(sectionPos) >= farthestReleased);
+        }
+    }
+
+    @Test
+    public void overdueSectionsIgnoreTheBudget()
+    {
+        RebuildScheduler scheduler = new RebuildScheduler();
+        for (int i = 0; i < 10; i++) {
+            scheduler.enqueue(PackedPositions.asLong(i, 0, 0));
+        }
+
+        LongList released = new LongArrayList();
+        for (int frame = 1; frame < RebuildScheduler.MAX_DELAY_FRAMES; frame++) {
+            assertEquals(0, scheduler.flush(0, 0, 0, 1, 0, 0, 0, Long.MAX_VALUE, 0, (sectionPos, important) -> released.add(sectionPos)));
+        }
+        assertEquals(10, scheduler.flush(0, 0, 0, 1, 0, 0, 0, Long.MAX_VALUE, 4, (sectionPos, important) -> {
+            assertFalse(important);
+            released.add(sectionPos);
+        }));
+        assertEquals(10, released.size());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    private static double distanceSquared(long sectionPos)
+    {
+        double dx = (PackedPositions.getX(sectionPos) << 4) + 8.0;
+        double dy = (PackedPositions.getY(sectionPos) << 4) + 8.0;
+        double dz = (PackedPositions.getZ(sectionPos) << 4) + 8.0;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SectionTrackerTest
+{
+    private static final SectionRebuildSink NO_REBUILD = sectionPos -> {
+    };
+    // Offsets within a section, on and around its boundaries.
+    private static final double[] OFFSETS = {0.0, 0.01, 0.49, 0.5, 0.51, 3.7, 8.0, 12.25, 15.49, 15.5, 15.51, 15.99};
+
+    @Test
+    public void tracksExactlyTheSectionsReachedByTheLight()
+    {
+        for (FalloffCurve falloff : FalloffCurve.values()) {
+            for (int luminance = 1; luminance <= 15; luminance++) {
+                for (double offsetX : OFFSETS) {
+                    for (double offsetY : OFFSETS) {
+                        for (double offsetZ : OFFSETS) {
+                            double x = 32 + offsetX;
+                            double y = 64 + offsetY;
+                            double z = -16 + offsetZ;
+                            SectionTracker tracker = new SectionTracker();
+                            tracker.update(x, y, z, luminance, falloff, 0, NO_REBUILD, new SectionSourceIndex<>(), this);
+                            LongSet trackedSections = getTrackedSections(tracker);
+                            String name = falloff + " with luminance " + luminance + " at " + x + ", " + y + ", " + z;
+
+                            assertEquals(name + " tracks a section twice", tracker.getTrackedCount(), trackedSections.size());
+                            assertEquals(name, getIntersectedSections(x, y, z, falloff.getEffectiveRadius(luminance)), trackedSections);
+                            for (long sectionPos : getLitSections(x, y, z, luminance, falloff)) {
+                                assertTrue(name + " misses the lit section " + sectionPos, trackedSections.contains(sectionPos));
+                            }
+                            // The former trackers always tracked the 3x3x3 sections around the light source.
+                            assertTrue(name + " tracks " + trackedSections.size() + " sections", trackedSections.size() <= 8);
+                            assertTrue(name + " tracks a section out of the 3x3x3 sections", getSurroundingSections(x, y, z).containsAll(trackedSections));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void movingReportsTheAddedAndRemovedSections()
+    {
+        SectionTracker tracker = new SectionTracker();
+        SectionSourceIndex<Object> index = new SectionSourceIndex<>();
+        Object source = new Object();
+        LongSet rebuilt = new LongOpenHashSet();
+
+        assertTrue(tracker.update(15.2, 64.5, 8.5, 12, FalloffCurve.LINEAR, 0.2, rebuilt::add, index, source));
+        LongSet before = getTrackedSections(tracker);
+        assertEquals(before, rebuilt);
+        assertIndexed(index, source, before);
+
+        // Moving less than the minimum delta changes nothing.
+        rebuilt.clear();
+        assertFalse(tracker.update(15.3, 64.5, 8.5, 12, FalloffCurve.LINEAR, 0.2, rebuilt::add, index, source));
+        assertTrue(rebuilt.isEmpty());
+
+        // Crossing into the next section rebuilds both the sections left and the sections entered.
+        assertTrue(tracker.update(23.0, 71.0, 7.0, 12, FalloffCurve.LINEAR, 0.2, rebuilt::add, index, source));
+        LongSet after = getTrackedSections(tracker);
+        LongSet expected = new LongOpenHashSet(before);
+        expected.addAll(after);
+        assertEquals(expected, rebuilt);
+        assertIndexed(index, source, after);
+        for (long sectionPos : before) {
+            if (!after.contains(sectionPos))
+                assertFalse(index.getSources(sectionPos).contains(source));
+        }
+
+        // A dimmer light reaches fewer sections.
+        rebuilt.clear();
+        assertTrue(tracker.update(23.0, 71.0, 7.0, 1, FalloffCurve.LINEAR, 0.2, rebuilt::add, index, source));
+        LongSet dimmed = getTrackedSections(tracker);
+        assertTrue(after.containsAll(dimmed) && dimmed.size() < after.size());
+        assertEquals(after, rebuilt);
+        assertIndexed(index, source, dimmed);
+
+        // Untracking rebuilds every section the light source lit and empties the index.
+        rebuilt.clear();
+        tracker.untrack(rebuilt::add, index, source);
+        assertEquals(dimmed, rebuilt);
+        assertEquals(0, tracker.getTrackedCount());
+        assertEquals(0, index.size());
+    }
+
+    private static void assertIndexed(SectionSourceIndex<Object> index, Object source, LongSet sections)
+    {
+        assertEquals(sections.size(), index.size());
+        for (long sectionPos : sections) {
+            assertEquals(1, index.getSources(sectionPos).size());
+            assertTrue(index.getSources(sectionPos).contains(source));
+        }
+    }
+
+    private static LongSet getSurroundingSections(double x, double y, double z)
+    {
+        LongSet sections = new LongOpenHashSet();
+        int centerX = PackedPositions.floor(x) >> 4;
+        int centerY = PackedPositions.floor(y) >> 4;
+        int centerZ = PackedPositions.floor(z) >> 4;
+        for (int sectionX = centerX - 1; sectionX <= centerX + 1; sectionX++) {
+            for (int sectionY = centerY - 1; sectionY <= centerY + 1; sectionY++) {
+                for (int sectionZ = centerZ - 1; sectionZ <= centerZ + 1; sectionZ++) {
+                    sections.add(PackedPositions.asLong(sectionX, sectionY, sectionZ));
+                }
+            }
+        }
+        return sections;
+    }
+
+    private static LongSet getTrackedSections(SectionTracker tracker)
+    {
+        LongSet sections = new LongOpenHashSet();
+        for (int i = 0; i < tracker.getTrackedCount(); i++) {
+            sections.add(tracker.getTrackedSection(i));
+        }
+        return sections;
+    }
+
+    // Sections with at least one block whose light rounds to a non-zero level in the section volumes.
+    private static LongSet getLitSections(double x, double y, double z, int luminance, FalloffCurve falloff)
+    {
+        LongSet sections = new LongOpenHashSet();
+        int range = (int) Math.ceil(DynamicLightMath.MAX_RADIUS) + 1;
+        for (int blockX = PackedPositions.floor(x) - range; blockX <= PackedPositions.floor(x) + range; blockX++) {
+            for (int blockY = PackedPositions.floor(y) - range; blockY <= PackedPositions.floor(y) + range; blockY++) {
+                for (int blockZ = PackedPositions.floor(z) - range; blockZ <= PackedPositions.floor(z) + range; blockZ++) {
+                    double lightLevel = DynamicLightMath.getLightLevel(falloff, blockX, blockY, blockZ, x, y, z, luminance);
+                    if ((int) (lightLevel * 16.0) > 0)
+                        sections.add(PackedPositions.asLong(blockX >> 4, blockY >> 4, blockZ >> 4));
+                }
+            }
+        }
+        return sections;
+    }
+
+    // Sections whose box of block centers intersects the sphere, checked against every section of a wide cube.
+    private static LongSet getIntersectedSections(double x, double y, double z, double radius)
+    {
+        LongSet sections = new LongOpenHashSet();
+        int centerX = PackedPositions.floor(x) >> 4;
+        int centerY = PackedPositions.floor(y) >> 4;
+        int centerZ = PackedPositions.floor(z) >> 4;
+        for (int sectionX = centerX - 2; sectionX <= centerX + 2; sectionX++) {
+            for (int sectionY = centerY - 2; sectionY <= centerY + 2; sectionY++) {
+                for (int sectionZ = centerZ - 2; sectionZ <= centerZ + 2; sectionZ++) {
+                    double dx = x - 0.5 - clamp(x - 0.5, sectionX << 4, (sectionX << 4) + 15);
+                    double dy = y - 0.5 - clamp(y - 0.5, sectionY << 4, (sectionY << 4) + 15);
+                    double dz = z - 0.5 - clamp(z - 0.5, sectionZ << 4, (sectionZ << 4) + 15);
+                    if (dx * dx + dy * dy + dz * dz <= radius * radius)
+                        sections.add(PackedPositions.asLong(sectionX, sectionY, sectionZ));
+                }
+            }
+        }
+        return sections;
+    }
+
+    private static double clamp(double value, double min, double max)
+    {
+        return Math.max(min, Math.min(max, value));
+    }
+}
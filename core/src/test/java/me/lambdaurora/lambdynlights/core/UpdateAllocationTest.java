@@ -0,0 +1,362 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongPredicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Publishing the sections of moving light sources is not checked: their changed volumes are new immutable arrays by design,
+// as the published snapshots are read by the chunk builder threads without locking.
+public class UpdateAllocationTest
+{
+    private static final int LIGHT_SOURCES = 500;
+    private static final int WARMUP_ROUNDS = 10000;
+    private static final int MEASURED_ROUNDS = 1000;
+    // Rebuilding the sections of every light source takes milliseconds, so the publications run fewer rounds.
+    private static final int PUBLICATION_WARMUP_ROUNDS = 300;
+    private static final int PUBLICATION_MEASURED_ROUNDS = 50;
+    // Length of the back and forth walk of the light sources, so the measured rounds revisit the warmed up sections.
+    private static final int WALK_STEPS = 100;
+    private static final int EQUIPMENT_SLOTS = 6;
+    private static final SectionRebuildSink NO_REBUILD = sectionPos -> {
+    };
+
+    private com.sun.management.ThreadMXBean threads;
+    private long operations;
+    private int round;
+    private int luminanceEvaluations;
+
+    @Before
+    public void enableAllocationCounter()
+    {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Thread allocation counters are not supported by this JVM.", this.threads.isThreadAllocatedMemorySupported());
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void sectionTrackerUpdatesDoNotAllocate()
+    {
+        SectionTracker[] trackers = new SectionTracker[LIGHT_SOURCES];
+        for (int i = 0; i < LIGHT_SOURCES; i++) {
+            trackers[i] = new SectionTracker();
+        }
+        SectionSourceIndex<SectionTracker> index = new SectionSourceIndex<>();
+        LightEngine engine = new LightEngine();
+        SectionRebuildSink sink = engine::invalidateSection;
+
+        this.assertNoAllocation("section tracker updates", WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+            int offset = this.round++ % (WALK_STEPS * 2);
+            double walk = (offset < WALK_STEPS ? offset : WALK_STEPS * 2 - offset) * 0.3;
+            for (int i = 0; i < trackers.length; i++) {
+                double x = (i % 25) * 11 + walk;
+                double z = (i / 25) * 11 + walk * 0.5;
+                if (trackers[i].update(x, 64.5 + (i & 7), z, 1 + (i % 15), FalloffCurve.LINEAR, 0.2, sink, index, trackers[i]))
+                    this.operations++;
+            }
+        });
+    }
+
+    @Test
+    public void stationaryPublicationsDoNotAllocate()
+    {
+        PackedLightSources.Builder builder = new PackedLightSources.Builder(LIGHT_SOURCES, FalloffCurve.LINEAR);
+        for (int i = 0; i < LIGHT_SOURCES; i++) {
+            builder.add(getStationaryX(i), getStationaryY(i), getStationaryZ(i), 1 + (i % 15));
+        }
+        PackedLightSources lightSources = builder.build();
+        LightEngine engine = new LightEngine();
+
+        this.assertNoAllocation("stationary publications", PUBLICATION_WARMUP_ROUNDS, PUBLICATION_MEASURED_ROUNDS, () -> {
+            // Every section of every light source is outdated, as when its luminance flickers back, but none of them changes.
+            for (int i = 0; i < LIGHT_SOURCES; i++) {
+                engine.invalidateSection(PackedPositions.asLong(
+                        PackedPositions.floor(getStationaryX(i)) >> 4,
+                        PackedPositions.floor(getStationaryY(i)) >> 4,
+                        PackedPositions.floor(getStationaryZ(i)) >> 4));
+            }
+            engine.publish(lightSources, LIGHT_SOURCES, NO_REBUILD);
+            this.operations += engine.getLastQueuedRebuilds();
+        });
+    }
+
+    @Test
+    public void lightSourcesPassDoesNotAllocate()
+    {
+        LightSourceSlots<Source> slots = new LightSourceSlots<>(Source.ACCESS);
+        Source[] sources = new Source[LIGHT_SOURCES];
+        for (int i = 0; i < LIGHT_SOURCES; i++) {
+            sources[i] = new Source(getStationaryX(i), getStationaryY(i), getStationaryZ(i));
+            slots.add(sources[i]);
+            slots.setAttachment(sources[i], sources[i]);
+        }
+
+        this.assertNoAllocation("light sources passes", WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+            int round = this.round++;
+            slots.nextGeneration();
+            for (Source source : sources) {
+                slots.markSeen(source);
+                slots.setLuminance(source, 1 + (round + source.slot) % 15);
+                if (slots.getAttachment(source) == source && slots.getTracker(source) != null)
+                    this.operations++;
+            }
+            assertEquals(0, slots.sweep());
+            // The budget is applied every few ticks.
+            if (round % 10 == 0)
+                slots.applyBudget(LIGHT_SOURCES / 2, 128, 64, 128, sources[0]);
+        });
+    }
+
+    @Test
+    public void fluidLookupsDoNotAllocate()
+    {
+        PositionFlagCache fluids = new PositionFlagCache();
+        LongPredicate loader = pos -> {
+            this.operations++;
+            return (PackedPositions.getX(pos) & 2) != 0;
+        };
+
+        this.assertNoAllocation("fluid lookups", WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+            fluids.clear();
+            for (int i = 0; i < LIGHT_SOURCES; i++) {
+                // Several light sources share each block, as mobs do in farms.
+                int x = i / 4;
+                assertEquals((x & 2) != 0, fluids.get(PackedPositions.asLong(x, 64, i / 100), loader));
+            }
+        });
+        assertEquals(MEASURED_ROUNDS * (LIGHT_SOURCES / 4), this.operations);
+    }
+
+    @Test
+    public void unchangedEquipmentDoesNotAllocate()
+    {
+        EquipmentAccess<Stack[], Stack> access = this.newEquipmentAccess();
+        Stack torch = new Stack(14);
+        Stack[][] entities = newEntities(torch);
+        EquipmentLuminanceCache<Stack[], Stack>[] caches = newEquipmentCaches(access);
+
+        this.assertNoAllocation("unchanged equipment lookups", WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+            if (this.round++ == WARMUP_ROUNDS)
+                this.luminanceEvaluations = 0;
+            for (int i = 0; i < LIGHT_SOURCES; i++) {
+                if (caches[i].getLuminance(entities[i], false) == 14)
+                    this.operations++;
+            }
+        });
+        assertEquals(MEASURED_ROUNDS * LIGHT_SOURCES, this.operations);
+        // The luminance of the warm caches is never evaluated again.
+        assertEquals(0, this.luminanceEvaluations);
+    }
+
+    @Test
+    public void changingEquipmentDoesNotAllocate()
+    {
+        EquipmentAccess<Stack[], Stack> access = this.newEquipmentAccess();
+        Stack torch = new Stack(14);
+        Stack lantern = new Stack(15);
+        Stack[][] entities = newEntities(torch);
+        EquipmentLuminanceCache<Stack[], Stack>[] caches = newEquipmentCaches(access);
+
+        this.assertNoAllocation("changing equipment lookups", WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+            // The entities swap their held item at every round, and dive at some rounds.
+            int round = this.round++;
+            boolean lanternHeld = (round & 1) != 0;
+            boolean submergedInWater = round % 3 == 0;
+            for (int i = 0; i < LIGHT_SOURCES; i++) {
+                entities[i][0] = lanternHeld ? lantern : torch;
+                int luminance = caches[i].getLuminance(entities[i], submergedInWater);
+                if (luminance == (submergedInWater ? 0 : lanternHeld ? 15 : 14))
+                    this.operations++;
+            }
+        });
+        assertEquals(MEASURED_ROUNDS * LIGHT_SOURCES, this.operations);
+        assertTrue(this.luminanceEvaluations > 0);
+    }
+
+    private void assertNoAllocation(String name, int warmupRounds, int measuredRounds, Runnable round)
+    {
+        for (int i = 0; i < warmupRounds; i++) {
+            round.run();
+        }
+
+        // Reading the counter allocates a little, which is measured first and subtracted.
+        long threadId = Thread.currentThread().getId();
+        long overhead = -this.threads.getThreadAllocatedBytes(threadId);
+        overhead += this.threads.getThreadAllocatedBytes(threadId);
+
+        this.operations = 0;
+        long before = this.threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < measuredRounds; i++) {
+            round.run();
+        }
+        long allocated = this.threads.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertTrue(name + " did not run any operation", this.operations > 0);
+        assertEquals(name + " allocated in steady state", 0, Math.max(allocated, 0));
+    }
+
+    private EquipmentAccess<Stack[], Stack> newEquipmentAccess()
+    {
+        return new EquipmentAccess<Stack[], Stack>()
+        {
+            @Override
+            public int getSlotCount()
+            {
+                return EQUIPMENT_SLOTS;
+            }
+
+            @Override
+            public @NotNull Stack getStack(@NotNull Stack[] entity, int slot)
+            {
+                return entity[slot];
+            }
+
+            @Override
+            public @NotNull Object getItem(@NotNull Stack stack)
+            {
+                return stack.item;
+            }
+
+            @Override
+            public boolean isEmpty(@NotNull Stack stack)
+            {
+                return stack == Stack.EMPTY;
+            }
+
+            @Override
+            public int getLuminance(@NotNull Stack stack, boolean submergedInWater)
+            {
+                UpdateAllocationTest.this.luminanceEvaluations++;
+                return submergedInWater ? 0 : stack.luminance;
+            }
+
+            @Override
+            public int getGeneration()
+            {
+                return 0;
+            }
+        };
+    }
+
+    private static Stack[][] newEntities(Stack held)
+    {
+        Stack[][] entities = new Stack[LIGHT_SOURCES][EQUIPMENT_SLOTS];
+        for (Stack[] equipment : entities) {
+            java.util.Arrays.fill(equipment, Stack.EMPTY);
+            equipment[0] = held;
+        }
+        return entities;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static EquipmentLuminanceCache<Stack[], Stack>[] newEquipmentCaches(EquipmentAccess<Stack[], Stack> access)
+    {
+        EquipmentLuminanceCache<Stack[], Stack>[] caches = new EquipmentLuminanceCache[LIGHT_SOURCES];
+        for (int i = 0; i < LIGHT_SOURCES; i++) {
+            caches[i] = new EquipmentLuminanceCache<>(access);
+        }
+        return caches;
+    }
+
+    private static double getStationaryX(int i)
+    {
+        return (i % 25) * 11 + 0.5;
+    }
+
+    private static double getStationaryY(int i)
+    {
+        return 64.5 + (i & 7);
+    }
+
+    private static double getStationaryZ(int i)
+    {
+        return (i / 25) * 11 + 0.5;
+    }
+
+    private static final class Stack
+    {
+        private static final Stack EMPTY = new Stack(0);
+
+        private final Object item = new Object();
+        private final int luminance;
+
+        private Stack(int luminance)
+        {
+            this.luminance = luminance;
+        }
+    }
+
+    private static final class Source
+    {
+        private static final LightSourceAccess<Source> ACCESS = new LightSourceAccess<Source>()
+        {
+            @Override
+            public int getSlot(@NotNull Source source)
+            {
+                return source.slot;
+            }
+
+            @Override
+            public void setSlot(@NotNull Source source, int slot)
+            {
+                source.slot = slot;
+            }
+
+            @Override
+            public double getX(@NotNull Source source)
+            {
+                return source.x;
+            }
+
+            @Override
+            public double getY(@NotNull Source source)
+            {
+                return source.y;
+            }
+
+            @Override
+            public double getZ(@NotNull Source source)
+            {
+                return source.z;
+            }
+
+            @Override
+            public int getLuminance(@NotNull Source source)
+            {
+                return 10;
+            }
+
+            @Override
+            public void untrack(@NotNull Source source)
+            {
+            }
+        };
+
+        private final double x;
+        private final double y;
+        private final double z;
+        private int slot = -1;
+
+        private Source(double x, double y, double z)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+}
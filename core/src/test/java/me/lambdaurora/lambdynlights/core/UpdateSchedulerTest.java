@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.core;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UpdateSchedulerTest
+{
+    private static final long FRAME_NANOS = 16_000_000L;
+
+    @Test
+    public void visitsEverySlotWithinThePeriod()
+    {
+        int[][] cases = {{100, 1000}, {7, 1000}, {1000, 250}, {3, 16}, {50, 5000}};
+        for (int[] test : cases) {
+            int count = test[0];
+            long periodNanos = test[1] * 1_000_000L;
+            UpdateScheduler scheduler = new UpdateScheduler();
+            // The first frame has no previous frame, so it updates nothing.
+            assertEquals(0, scheduler.schedule(0, periodNanos, count));
+
+            double perFrame = count * (double) FRAME_NANOS / periodNanos;
+            int maxFrames = (int) Math.ceil(count / perFrame);
+            BitSet visited = new BitSet(count);
+            for (int frame = 1; frame <= maxFrames; frame++) {
+                int slots = scheduler.schedule(frame * FRAME_NANOS, periodNanos, count);
+                assertTrue(slots <= count);
+                for (int i = 0; i < slots; i++) {
+                    visited.set(scheduler.next(count));
+                }
+            }
+            assertEquals(count + " slots in " + test[1] + " ms", count, visited.cardinality());
+        }
+    }
+
+    @Test
+    public void shrinkingKeepsVisitingEverySlot()
+    {
+        // One slot per frame for 10 slots.
+        long periodNanos = 10 * FRAME_NANOS;
+        for (int visitedBefore = 0; visitedBefore < 10; visitedBefore++) {
+            UpdateScheduler scheduler = new UpdateScheduler();
+            scheduler.schedule(0, periodNanos, 10);
+            long now = 0;
+            for (int i = 0; i < visitedBefore; i++) {
+                now += FRAME_NANOS;
+                assertEquals(1, scheduler.schedule(now, periodNanos, 10));
+                assertEquals(i, scheduler.next(10));
+            }
+
+            // Swap-removing 5 light sources shrinks the slots, the remaining ones are still all visited within the period.
+            int count = 5;
+            BitSet visited = new BitSet(count);
+            for (int frame = 0; frame < periodNanos / FRAME_NANOS; frame++) {
+                now += FRAME_NANOS;
+                int slots = scheduler.schedule(now, periodNanos, count);
+                for (int i = 0; i < slots; i++) {
+                    int slot = scheduler.next(count);
+                    assertTrue("slot " + slot + " out of " + count, slot < count);
+                    visited.set(slot);
+                }
+            }
+            assertEquals("after visiting " + visitedBefore + " slots", count, visited.cardinality());
+        }
+    }
+
+    @Test
+    public void emptySlotsDropTheCredit()
+    {
+        long periodNanos = 1_000_000L;
+        UpdateScheduler scheduler = new UpdateScheduler();
+        scheduler.schedule(0, periodNanos, 10);
+        // Half a slot of credit, which is dropped once there is no slot anymore.
+        assertEquals(0, scheduler.schedule(50_000, periodNanos, 10));
+        assertEquals(0, scheduler.schedule(100_000, periodNanos, 0));
+        assertEquals(0, scheduler.schedule(150_000, periodNanos, 10));
+        assertEquals(1, scheduler.schedule(250_000, periodNanos, 10));
+    }
+}
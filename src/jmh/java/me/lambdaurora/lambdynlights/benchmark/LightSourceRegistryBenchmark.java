@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.benchmark;
+
+import me.lambdaurora.lambdynlights.core.LightSnapshot;
+import me.lambdaurora.lambdynlights.core.PackedPositions;
+import me.lambdaurora.lambdynlights.core.SectionRebuildSink;
+import me.lambdaurora.lambdynlights.engine.LightSourceRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the publication and the membership changes of the tracked light sources through the mod adapter.
+ * <p>
+ * The light engine itself is benchmarked by the {@code core} project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightSourceRegistryBenchmark
+{
+    private static final SectionRebuildSink NO_REBUILD = sectionPos -> {
+    };
+
+    @Param({"100", "1000", "10000"})
+    public int lightSourcesCount;
+
+    private StubLightSource[] lightSources;
+    private LightSourceRegistry registry;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        this.lightSources = new StubLightSource[this.lightSourcesCount];
+        this.registry = new LightSourceRegistry(null);
+        for (int i = 0; i < this.lightSourcesCount; i++) {
+            this.lightSources[i] = new StubLightSource(random.nextDouble() * 128, random.nextDouble() * 32, random.nextDouble() * 128,
+                    1 + random.nextInt(15));
+            this.registry.add(this.lightSources[i]);
+        }
+        this.registry.publish(NO_REBUILD);
+    }
+
+    /**
+     * Packs the light sources and rebuilds the volume of the section of one light source.
+     */
+    @Benchmark
+    public LightSnapshot publish()
+    {
+        StubLightSource lightSource = this.lightSources[0];
+        this.registry.invalidateSection(PackedPositions.sectionOf(lightSource.getDynamicLightX(), lightSource.getDynamicLightY(), lightSource.getDynamicLightZ()));
+        this.registry.publish(NO_REBUILD);
+        return this.registry.getSnapshot();
+    }
+
+    /**
+     * Removes and adds back one light source, then checks whether another one is tracked.
+     */
+    @Benchmark
+    public boolean churn()
+    {
+        StubLightSource lightSource = this.lightSources[0];
+        this.registry.remove(lightSource);
+        this.registry.add(lightSource);
+        return this.registry.contains(this.lightSources[this.lightSourcesCount / 2]);
+    }
+}
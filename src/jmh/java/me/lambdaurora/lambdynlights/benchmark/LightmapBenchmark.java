@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.benchmark;
+
+import me.lambdaurora.lambdynlights.DynamicLightsReforged;
+import net.minecraft.client.renderer.LightTexture;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the merge of dynamic light levels into the vanilla lightmap coordinates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightmapBenchmark
+{
+    private static final int VALUES = 1024;
+
+    private final double[] levels = new double[VALUES];
+    private final int[] lightmaps = new int[VALUES];
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++) {
+            this.levels[i] = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 15.0;
+            this.lightmaps[i] = LightTexture.pack(random.nextInt(16), random.nextInt(16));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void getLightmapWithDynamicLight(Blackhole blackhole)
+    {
+        for (int i = 0; i < VALUES; i++) {
+            blackhole.consume(DynamicLightsReforged.getLightmapWithDynamicLight(this.levels[i], this.lightmaps[i]));
+        }
+    }
+}
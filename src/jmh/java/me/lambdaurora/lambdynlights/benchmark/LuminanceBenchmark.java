@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.benchmark;
+
+import me.lambdaurora.lambdynlights.DynamicLightsReforged;
+import me.lambdaurora.lambdynlights.api.DynamicLightHandlers;
+import me.lambdaurora.lambdynlights.api.item.ItemLightSource;
+import me.lambdaurora.lambdynlights.api.item.ItemLightSources;
+import me.lambdaurora.lambdynlights.config.DynamicLightsConfig;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.resources.ResourcePackType;
+import net.minecraft.resources.SimpleReloadableResourceManager;
+import net.minecraft.tileentity.FurnaceTileEntity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.tileentity.TileEntityType;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.registry.Bootstrap;
+import net.minecraft.util.registry.Registry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the luminance lookups done for each light source at each tick.
+ * <p>
+ * Only the vanilla registries are bootstrapped, entity handlers need a world and are not covered here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LuminanceBenchmark
+{
+    private static final int STACKS = 256;
+
+    /**
+     * Number of item light sources registered in addition of the default ones, like in a modpack.
+     */
+    @Param({"0", "100", "1000"})
+    public int extraItemLightSources;
+
+    private ItemStack[] stacks;
+    private TileEntity furnace;
+    private Path configPath;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        Bootstrap.bootStrap();
+        this.configPath = Files.createTempFile("dynamic_lights_reforged", ".toml");
+        DynamicLightsConfig.loadConfig(this.configPath);
+
+        Item[] items = Registry.ITEM.stream().toArray(Item[]::new);
+        for (int i = 0; i < this.extraItemLightSources; i++) {
+            ItemLightSources.registerItemLightSource(new ItemLightSource(new ResourceLocation("benchmark", "item_" + i), items[i % items.length], 1 + i % 15));
+        }
+        ItemLightSources.registerItemLightSource(new ItemLightSource(new ResourceLocation("benchmark", "torch"), Items.TORCH, 14));
+        // Without any resource pack, only the registered item light sources are loaded.
+        ItemLightSources.load(new SimpleReloadableResourceManager(ResourcePackType.CLIENT_RESOURCES));
+
+        Random random = new Random(42);
+        this.stacks = new ItemStack[STACKS];
+        for (int i = 0; i < STACKS; i++) {
+            this.stacks[i] = new ItemStack(items[random.nextInt(items.length)]);
+        }
+
+        DynamicLightHandlers.registerDynamicLightHandler(TileEntityType.FURNACE, furnace -> 13);
+        this.furnace = new FurnaceTileEntity();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(this.configPath);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STACKS)
+    public void itemLuminance(Blackhole blackhole)
+    {
+        for (ItemStack stack : this.stacks) {
+            blackhole.consume(DynamicLightsReforged.getLuminanceFromItemStack(stack, false));
+        }
+    }
+
+    @Benchmark
+    public int blockEntityLuminance()
+    {
+        return DynamicLightHandlers.getLuminanceFrom(this.furnace);
+    }
+}
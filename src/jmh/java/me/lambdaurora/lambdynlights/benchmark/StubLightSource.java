@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.benchmark;
+
+import me.lambdaurora.lambdynlights.DynamicLightSource;
+import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Light source standing still at a fixed position, without any world.
+ */
+public final class StubLightSource implements DynamicLightSource
+{
+    private final double x;
+    private final double y;
+    private final double z;
+    private final int luminance;
+    private int slot = -1;
+
+    public StubLightSource(double x, double y, double z, int luminance)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.luminance = luminance;
+    }
+
+    @Override
+    public double getDynamicLightX()
+    {
+        return this.x;
+    }
+
+    @Override
+    public double getDynamicLightY()
+    {
+        return this.y;
+    }
+
+    @Override
+    public double getDynamicLightZ()
+    {
+        return this.z;
+    }
+
+    @Override
+    public World getDynamicLightWorld()
+    {
+        return null;
+    }
+
+    @Override
+    public void resetDynamicLight()
+    {
+    }
+
+    @Override
+    public int getLuminance()
+    {
+        return this.luminance;
+    }
+
+    @Override
+    public void dynamicLightTick()
+    {
+    }
+
+    @Override
+    public boolean shouldUpdateDynamicLight()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean lambdynlights_updateDynamicLight(@NotNull WorldRenderer renderer)
+    {
+        return false;
+    }
+
+    @Override
+    public void lambdynlights_scheduleTrackedChunksRebuild(@NotNull WorldRenderer renderer)
+    {
+    }
+
+    @Override
+    public void lambdynlights_untrackSections()
+    {
+    }
+
+    @Override
+    public int lambdynlights_getSlot()
+    {
+        return this.slot;
+    }
+
+    @Override
+    public void lambdynlights_setSlot(int slot)
+    {
+        this.slot = slot;
+    }
+}
@@ -94,6 +94,8 @@ public interface DynamicLightSource {
 
     /**
      * Returns whether this dynamic light source should update.
+     * <p>
+     * The update rate itself is spread over the light sources by {@link DynamicLightsReforged#updateAll(WorldRenderer)}.
      *
      * @return {@code true} if this dynamic light source should update, else {@code false}
      */
@@ -102,4 +104,25 @@ public interface DynamicLightSource {
     boolean lambdynlights_updateDynamicLight(@NotNull WorldRenderer renderer);
 
     void lambdynlights_scheduleTrackedChunksRebuild(@NotNull WorldRenderer renderer);
+
+    /**
+     * Stops tracking the chunk sections lit by this light source, and schedules their rebuild if they belong to the current world.
+     */
+    void lambdynlights_untrackSections();
+
+    /**
+     * Returns the slot of this light source in the light sources registry.
+     *
+     * @return the slot, or {@code -1} if this light source is not enrolled
+     */
+    @ApiStatus.Internal
+    int lambdynlights_getSlot();
+
+    /**
+     * Sets the slot of this light source in the light sources registry.
+     *
+     * @param slot the slot, or {@code -1} if this light source is not enrolled
+     */
+    @ApiStatus.Internal
+    void lambdynlights_setSlot(int slot);
 }
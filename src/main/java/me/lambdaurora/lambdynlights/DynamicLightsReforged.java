@@ -9,24 +9,48 @@
 
 package me.lambdaurora.lambdynlights;
 
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import me.lambdaurora.lambdynlights.accessor.WorldRendererAccessor;
 import me.lambdaurora.lambdynlights.api.DynamicLightHandlers;
 import me.lambdaurora.lambdynlights.api.item.ItemLightSources;
 import me.lambdaurora.lambdynlights.config.DynamicLightsConfig;
+import me.lambdaurora.lambdynlights.core.DynamicLightMath;
+import me.lambdaurora.lambdynlights.core.EquipmentAccess;
+import me.lambdaurora.lambdynlights.core.EquipmentLuminanceCache;
+import me.lambdaurora.lambdynlights.core.FalloffCurve;
+import me.lambdaurora.lambdynlights.core.LightEngine;
+import me.lambdaurora.lambdynlights.core.LightSnapshot;
+import me.lambdaurora.lambdynlights.core.LodTier;
+import me.lambdaurora.lambdynlights.core.PackedPositions;
+import me.lambdaurora.lambdynlights.core.RebuildScheduler;
+import me.lambdaurora.lambdynlights.core.SectionRebuildSink;
+import me.lambdaurora.lambdynlights.core.SectionSourceIndex;
+import me.lambdaurora.lambdynlights.core.SectionTracker;
+import me.lambdaurora.lambdynlights.core.UpdateScheduler;
+import me.lambdaurora.lambdynlights.engine.FluidStateCache;
+import me.lambdaurora.lambdynlights.engine.LightSourceRegistry;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.ActiveRenderInfo;
 import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.item.TNTEntity;
 import net.minecraft.entity.monster.CreeperEntity;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.inventory.EquipmentSlotType;
 import net.minecraft.item.ItemStack;
 import net.minecraft.resources.IReloadableResourceManager;
 import net.minecraft.resources.IResourceManager;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.util.math.vector.Vector3f;
+import net.minecraft.world.World;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.DistExecutor;
@@ -41,12 +65,9 @@ import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
 
 /**
@@ -81,17 +102,78 @@ class ExecutorHelper {
 public class DynamicLightsReforged
 {
     public static final String MODID = "dynamiclightsreforged";
-    private static final double MAX_RADIUS = 7.75;
-    private static final double MAX_RADIUS_SQUARED = MAX_RADIUS * MAX_RADIUS;
+    public static final double MAX_RADIUS = DynamicLightMath.MAX_RADIUS;
+    public static final double MAX_RADIUS_SQUARED = DynamicLightMath.MAX_RADIUS_SQUARED;
+    /**
+     * Schedules the rebuild of the chunk sections of the current world renderer.
+     */
+    public static final SectionRebuildSink REBUILD_SINK = DynamicLightsReforged::scheduleChunkRebuild;
 
     private static DynamicLightsReforged INSTANCE;
     public static final Logger logger = LogManager.getLogger(MODID);
 
-    //private static final ConcurrentLinkedQueue<DynamicLightSource> dynamicLightSources = new ConcurrentLinkedQueue<>();
-    private static final Set<DynamicLightSource> dynamicLightSources = new HashSet<>();
-    private static final ReentrantReadWriteLock lightSourcesLock = new ReentrantReadWriteLock();
+    // Replaced at each world change, the chunk builder threads read the snapshot of the current one.
+    private static volatile LightSourceRegistry dynamicLightSources = new LightSourceRegistry(null);
+    private static final RebuildScheduler rebuildScheduler = new RebuildScheduler();
+
+    // Scratch position of the fluid checks done outside of the client thread, which cannot use the fluid state cache.
+    private static final ThreadLocal<BlockPos.Mutable> EYE_POS = ThreadLocal.withInitial(BlockPos.Mutable::new);
+    private static final FluidStateCache fluidStateCache = new FluidStateCache();
+    private static final EquipmentSlotType[] EQUIPMENT_SLOTS = EquipmentSlotType.values();
+    private static final EquipmentAccess<LivingEntity, ItemStack> EQUIPMENT_ACCESS = new EquipmentAccess<LivingEntity, ItemStack>() {
+        @Override
+        public int getSlotCount() {
+            return EQUIPMENT_SLOTS.length;
+        }
+
+        @Override
+        public @NotNull ItemStack getStack(@NotNull LivingEntity entity, int slot) {
+            return entity.getItemBySlot(EQUIPMENT_SLOTS[slot]);
+        }
+
+        @Override
+        public @NotNull Object getItem(@NotNull ItemStack stack) {
+            return stack.getItem();
+        }
+
+        @Override
+        public boolean isEmpty(@NotNull ItemStack stack) {
+            return stack.isEmpty();
+        }
+
+        @Override
+        public int getLuminance(@NotNull ItemStack stack, boolean submergedInWater) {
+            return getLuminanceFromItemStack(stack, submergedInWater);
+        }
 
-    private static long lastUpdate = System.currentTimeMillis();
+        @Override
+        public int getGeneration() {
+            return ItemLightSources.getGeneration();
+        }
+    };
+
+    // Number of ticks between two selections of the active light sources.
+    private static final int BUDGET_INTERVAL_TICKS = 10;
+    // Number of ticks between two sweeps of the light sources which left the world without being removed.
+    private static final int SWEEP_INTERVAL_TICKS = 20;
+
+    private static int clientTicks = 0;
+    private static int lastBudgetTick = -BUDGET_INTERVAL_TICKS;
+    private static boolean hasLodCamera = false;
+    private static double lodCameraX;
+    private static double lodCameraZ;
+    private static double lodVisibleDistance;
+    private static double lodNearDistance;
+    private static int lodMidRangeInterval;
+    private static boolean entityLighting = true;
+    private static boolean tileEntityLighting = true;
+    private static int lastTickedCount = 0;
+    private static long lastTickNanos = 0;
+    private static final LongOpenHashSet unloadedChunks = new LongOpenHashSet();
+    private static long purgedCount = 0;
+    private static long leakedCount = 0;
+
+    private static final UpdateScheduler updateScheduler = new UpdateScheduler();
     private static int lastUpdateCount = 0;
 
     public static boolean isEnabled() { return !Objects.equals(DynamicLightsConfig.Quality.get(), "OFF"); }
@@ -111,28 +193,209 @@ public class DynamicLightsReforged
         DistExecutor.safeRunWhenOn(Dist.CLIENT, () -> ExecutorHelper::onInitializeClient);
     }
 
+    /**
+     * Returns the period in which every light source is updated once, depending on the quality.
+     *
+     * @return the update period, in milliseconds
+     */
+    public static long getUpdatePeriodMillis() {
+        String mode = DynamicLightsConfig.Quality.get();
+        if (Objects.equals(mode, "SLOW"))
+            return 500;
+        if (Objects.equals(mode, "FAST"))
+            return 200;
+        return 50;
+    }
+
 
-    private static long lambdynlights_lastUpdate = 0;
+    /**
+     * Called at the start of every client tick, before the light sources tick.
+     */
+    public static void onClientTick() {
+        clientTicks++;
+        fluidStateCache.clear();
+
+        Minecraft client = Minecraft.getInstance();
+        Entity camera = client.getCameraEntity();
+        hasLodCamera = camera != null;
+        if (hasLodCamera) {
+            lodCameraX = camera.getX();
+            lodCameraZ = camera.getZ();
+            lodVisibleDistance = LodTier.getVisibleDistance(client.options.renderDistance);
+            lodNearDistance = DynamicLightsConfig.FullRateDistance.get();
+            lodMidRangeInterval = DynamicLightsConfig.MidRangeTickInterval.get();
+        }
+    }
 
-    public static boolean ShouldUpdateDynamicLights()
-    {
-        String mode = DynamicLightsConfig.Quality.get();
-        if (Objects.equals(mode, "OFF"))
-            return false;
+    /**
+     * Ticks every light source of the world in one pass, after the entities and block entities ticked.
+     * <p>
+     * The configuration is read once for the whole pass, then each light source evaluates its luminance and updates its tracking.
+     * The lit sections are rebuilt by the next {@link #updateAll(WorldRenderer)}.
+     *
+     * @param world the client world
+     */
+    public static void tickLightSources(@NotNull ClientWorld world) {
+        if (!isEnabled())
+            return;
 
-        long currentTime = System.currentTimeMillis();
+        long start = System.nanoTime();
+        entityLighting = DynamicLightsConfig.EntityLighting.get();
+        tileEntityLighting = DynamicLightsConfig.TileEntityLighting.get();
+        int ticked = 0;
 
-        if (Objects.equals(mode, "SLOW") && currentTime < lambdynlights_lastUpdate + 500)
-            return false;
+        purgeUnloadedChunks(world);
+        dynamicLightSources.nextGeneration();
 
+        for (Entity entity : world.entitiesForRendering()) {
+            DynamicLightSource lightSource = (DynamicLightSource) entity;
+            if (entity.removed) {
+                lightSource.setDynamicLightEnabled(false);
+                continue;
+            }
+            dynamicLightSources.markSeen(lightSource);
+            if (shouldTickDynamicLight(lightSource)) {
+                lightSource.dynamicLightTick();
+                updateTracking(lightSource);
+                ticked++;
+            }
+        }
 
-        if (Objects.equals(mode, "FAST") && currentTime < lambdynlights_lastUpdate + 200)
-            return false;
+        for (TileEntity blockEntity : world.tickableBlockEntities) {
+            DynamicLightSource lightSource = (DynamicLightSource) blockEntity;
+            if (blockEntity.isRemoved())
+                continue;
+            dynamicLightSources.markSeen(lightSource);
+            if (!tileEntityLighting) {
+                if (lightSource.isDynamicLightEnabled())
+                    lightSource.setDynamicLightEnabled(false);
+            } else if (shouldTickDynamicLight(lightSource)) {
+                lightSource.dynamicLightTick();
+                updateTracking(lightSource);
+                ticked++;
+            }
+        }
+
+        // Every entity and block entity still in the world was seen by this pass, the other ones leaked.
+        if (clientTicks % SWEEP_INTERVAL_TICKS == 0) {
+            int leaked = dynamicLightSources.sweep();
+            leakedCount += leaked;
+            if (leaked != 0)
+                logger.debug("Swept {} dynamic light sources which left the world without being removed.", leaked);
+        }
+
+        lastTickedCount = ticked;
+        lastTickNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Called when a client chunk unloads, its light sources are purged by the next light sources pass.
+     *
+     * @param x the chunk X coordinate
+     * @param z the chunk Z coordinate
+     */
+    public static void onChunkUnload(int x, int z) {
+        unloadedChunks.add(ChunkPos.asLong(x, z));
+    }
+
+    // Purges the light sources of the chunks unloaded since the last pass in one walk, unless the chunk loaded again since.
+    private static void purgeUnloadedChunks(@NotNull ClientWorld world) {
+        if (unloadedChunks.isEmpty())
+            return;
+
+        LongIterator it = unloadedChunks.iterator();
+        while (it.hasNext()) {
+            long chunkPos = it.nextLong();
+            if (world.getChunkSource().hasChunk(ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos)))
+                it.remove();
+        }
+        purgedCount += dynamicLightSources.purgeChunks(unloadedChunks);
+        unloadedChunks.clear();
+    }
+
+    /**
+     * Returns the total number of light sources purged with their unloaded chunk.
+     *
+     * @return the number of purged light sources
+     */
+    public static long getPurgedLightSourcesCount() {
+        return purgedCount;
+    }
+
+    /**
+     * Returns the total number of light sources swept because they left the world without being removed nor purged.
+     * <p>
+     * This should stay at 0, a growing count means a removal path is missing.
+     *
+     * @return the number of leaked light sources
+     */
+    public static long getLeakedLightSourcesCount() {
+        return leakedCount;
+    }
+
+    /**
+     * Returns whether entities emit dynamic light, as read by the last light sources pass.
+     *
+     * @return {@code true} if entities emit dynamic light, else {@code false}
+     */
+    public static boolean isEntityLightingEnabled() {
+        return entityLighting;
+    }
+
+    /**
+     * Returns whether block entities emit dynamic light, as read by the last light sources pass.
+     *
+     * @return {@code true} if block entities emit dynamic light, else {@code false}
+     */
+    public static boolean isTileEntityLightingEnabled() {
+        return tileEntityLighting;
+    }
 
-        lambdynlights_lastUpdate = currentTime;
-        return true;
+    /**
+     * Returns the number of light sources ticked by the last light sources pass.
+     *
+     * @return the number of ticked light sources
+     */
+    public static int getLastTickedCount() {
+        return lastTickedCount;
+    }
+
+    /**
+     * Returns the duration of the last light sources pass.
+     *
+     * @return the duration in nanoseconds
+     */
+    public static long getLastTickNanos() {
+        return lastTickNanos;
     }
 
+    /**
+     * Returns whether the light source should tick now, depending on its distance to the camera.
+     * <p>
+     * Mid range light sources only tick once every few ticks, and light sources which cannot light any rendered block
+     * are parked: they stop being tracked until the camera gets closer.
+     *
+     * @param lightSource the light source
+     * @return {@code true} if the light source should tick, else {@code false}
+     */
+    public static boolean shouldTickDynamicLight(@NotNull DynamicLightSource lightSource) {
+        if (!hasLodCamera)
+            return true;
+
+        double dx = lightSource.getDynamicLightX() - lodCameraX;
+        double dz = lightSource.getDynamicLightZ() - lodCameraZ;
+        switch (LodTier.of(dx * dx + dz * dz, lodNearDistance, lodVisibleDistance)) {
+            case PARKED:
+                if (lightSource.isDynamicLightEnabled())
+                    lightSource.setDynamicLightEnabled(false);
+                return false;
+            case MID:
+                // Spreads the mid range light sources over the interval.
+                return Math.floorMod(clientTicks + System.identityHashCode(lightSource), lodMidRangeInterval) == 0;
+            default:
+                return true;
+        }
+    }
 
     /**
      * Updates all light sources.
@@ -141,25 +404,61 @@ public class DynamicLightsReforged
      */
     public static void updateAll(@NotNull WorldRenderer renderer)
     {
-        if (!DynamicLightsReforged.isEnabled())
-            return;
-
-        long now = System.currentTimeMillis();
-        if (now >= lastUpdate + 50) {
-            lastUpdate = now;
-            lastUpdateCount = 0;
+        updateAll(renderer, Minecraft.getInstance().gameRenderer.getMainCamera());
+    }
 
-            lightSourcesLock.readLock().lock();
+    /**
+     * Updates all light sources, and releases the section rebuilds closest to the camera.
+     *
+     * @param renderer the renderer
+     * @param camera the camera
+     */
+    public static void updateAll(@NotNull WorldRenderer renderer, @NotNull ActiveRenderInfo camera)
+    {
+        // Merging light sources sharing a position does not change any light level.
+        dynamicLightSources.setMergeDuplicates(DynamicLightsConfig.MergeDuplicateLightSources.get());
+        if (dynamicLightSources.setFalloff(FalloffCurve.byName(DynamicLightsConfig.Falloff.get()))) {
+            // Every lit section has to be rebuilt with the new falloff curve.
             for (DynamicLightSource lightSource : dynamicLightSources) {
-                if (lightSource.lambdynlights_updateDynamicLight(renderer)) lastUpdateCount++;
+                lightSource.lambdynlights_scheduleTrackedChunksRebuild(renderer);
             }
-            lightSourcesLock.readLock().unlock();
+        }
 
+        Vector3d position = camera.getPosition();
+        if (clientTicks - lastBudgetTick >= BUDGET_INTERVAL_TICKS) {
+            lastBudgetTick = clientTicks;
+            dynamicLightSources.applyBudget(DynamicLightsConfig.MaxActiveLightSources.get(), position.x, position.y, position.z,
+                    (DynamicLightSource) Minecraft.getInstance().player);
         }
+
+        lastUpdateCount = 0;
+        if (DynamicLightsReforged.isEnabled()) {
+            // Every frame updates its share of the light sources, so each one is updated once per period.
+            int count = dynamicLightSources.size();
+            int slots = updateScheduler.schedule(System.nanoTime(), getUpdatePeriodMillis() * 1_000_000L, count);
+            for (int i = 0; i < slots; i++) {
+                DynamicLightSource lightSource = dynamicLightSources.get(updateScheduler.next(count));
+                // Demoted light sources do not track any section until they are promoted.
+                if (dynamicLightSources.isActive(lightSource) && lightSource.lambdynlights_updateDynamicLight(renderer))
+                    lastUpdateCount++;
+            }
+        } else {
+            updateScheduler.reset();
+        }
+
+        // Chunk builder threads only see the light sources changes once published,
+        // and only the sections whose light levels changed are rebuilt.
+        dynamicLightSources.publish(rebuildScheduler::enqueue);
+
+        Vector3f look = camera.getLookVector();
+        rebuildScheduler.flush(position.x, position.y, position.z, look.x(), look.y(), look.z(),
+                DynamicLightsConfig.MaxRebuildsPerFrame.get(), DynamicLightsConfig.RebuildBudgetMicros.get() * 1000L,
+                DynamicLightsConfig.ImportantRebuildsPerFrame.get(),
+                (sectionPos, important) -> rebuildSection(renderer, sectionPos, important));
     }
 
     /**
-     * Returns the last number of dynamic light source updates.
+     * Returns the number of dynamic light source updates of the last frame.
      *
      * @return the last number of dynamic light source updates
      */
@@ -167,6 +466,71 @@ public class DynamicLightsReforged
         return lastUpdateCount;
     }
 
+    /**
+     * Returns the falloff curve of the dynamic lights.
+     *
+     * @return the falloff curve
+     */
+    public static @NotNull FalloffCurve getFalloff() {
+        return dynamicLightSources.getFalloff();
+    }
+
+    /**
+     * Returns the light engine, which also counts the coalesced section rebuilds.
+     *
+     * @return the light engine
+     */
+    public static @NotNull LightEngine getLightEngine() {
+        return dynamicLightSources.getEngine();
+    }
+
+    /**
+     * Returns the index of the light sources lighting each chunk section.
+     *
+     * @return the section index
+     */
+    public static @NotNull SectionSourceIndex<DynamicLightSource> getSectionIndex() {
+        return dynamicLightSources.getSectionIndex();
+    }
+
+    /**
+     * Returns the section tracker of the light source, which only exists while the light source is tracked.
+     *
+     * @param lightSource the light source
+     * @return the section tracker, or {@code null} if the light source is not tracked
+     */
+    public static @Nullable SectionTracker getSectionTracker(@NotNull DynamicLightSource lightSource) {
+        return dynamicLightSources.getTracker(lightSource);
+    }
+
+    /**
+     * Returns the light sources lighting the chunk section of the specified position.
+     *
+     * @param pos the position
+     * @return the light sources, which must not be modified
+     */
+    public static @NotNull List<DynamicLightSource> getLightSourcesAt(@NotNull BlockPos pos) {
+        return dynamicLightSources.getSectionIndex().getSources(PackedPositions.sectionOf(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    /**
+     * Returns the number of section rebuilds deferred to the next frames.
+     *
+     * @return the number of deferred section rebuilds
+     */
+    public static int getDeferredRebuildsCount() {
+        return rebuildScheduler.getPendingCount();
+    }
+
+    /**
+     * Returns the last published light snapshot.
+     *
+     * @return the light snapshot
+     */
+    public static @NotNull LightSnapshot getLightSnapshot() {
+        return dynamicLightSources.getSnapshot();
+    }
+
     /**
      * Returns the lightmap with combined light levels.
      *
@@ -227,14 +591,7 @@ public class DynamicLightsReforged
      * @return the dynamic light level at the specified position
      */
     public static double getDynamicLightLevel(@NotNull BlockPos pos) {
-        double result = 0;
-        lightSourcesLock.readLock().lock();
-        for (DynamicLightSource lightSource : dynamicLightSources) {
-            result = maxDynamicLightLevel(pos, lightSource, result);
-        }
-        lightSourcesLock.readLock().unlock();
-
-        return MathHelper.clamp(result, 0, 15);
+        return MathHelper.clamp(dynamicLightSources.getSnapshot().getDynamicLightLevel(pos.getX(), pos.getY(), pos.getZ()), 0, 15);
     }
 
     /**
@@ -246,48 +603,31 @@ public class DynamicLightsReforged
      * @return the dynamic light level at the specified position
      */
     public static double maxDynamicLightLevel(@NotNull BlockPos pos, @NotNull DynamicLightSource lightSource, double currentLightLevel) {
-        int luminance = lightSource.getLuminance();
-        if (luminance > 0) {
-            // Can't use Entity#squaredDistanceTo because of eye Y coordinate.
-            double dx = pos.getX() - lightSource.getDynamicLightX() + 0.5;
-            double dy = pos.getY() - lightSource.getDynamicLightY() + 0.5;
-            double dz = pos.getZ() - lightSource.getDynamicLightZ() + 0.5;
-
-            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
-
-            double distanceSquared = dx * dx + dy * dy + dz * dz;
-
-
-            // 7.75 because else we would have to update more chunks and that's not a good idea.
-            // 15 (max range for blocks) would be too much and a bit cheaty.
-            if (distanceSquared <= MAX_RADIUS_SQUARED) {
-                double multiplier = 1.0 - Math.sqrt(distanceSquared) / MAX_RADIUS;
-                double lightLevel = multiplier * (double) luminance;
-                if (lightLevel > currentLightLevel) {
-                    return lightLevel;
-                }
-            }
-        }
+        // Can't use Entity#squaredDistanceTo because of eye Y coordinate.
+        double lightLevel = DynamicLightMath.getLightLevel(dynamicLightSources.getFalloff(), pos.getX(), pos.getY(), pos.getZ(),
+                lightSource.getDynamicLightX(), lightSource.getDynamicLightY(), lightSource.getDynamicLightZ(), lightSource.getLuminance());
+        if (lightLevel > currentLightLevel)
+            return lightLevel;
         return currentLightLevel;
     }
 
     /**
      * Adds the light source to the tracked light sources.
+     * <p>
+     * Entities and block entities are removed with their chunk, or once they leave the world without being removed.
+     * Any other light source, as added by third-party mods, stays tracked until it is removed with {@link #removeLightSource(DynamicLightSource)},
+     * or until the client changes world.
      *
      * @param lightSource the light source to add
      */
     public static void addLightSource(@NotNull DynamicLightSource lightSource) {
-        if (!lightSource.getDynamicLightWorld().isClientSide())
+        // Only the light sources of the current client world are tracked, which excludes the server-side ones.
+        if (lightSource.getDynamicLightWorld() != dynamicLightSources.getWorld())
             return;
         if (!DynamicLightsReforged.isEnabled())
             return;
-        if (containsLightSource(lightSource))
-            return;
 
-        lightSourcesLock.readLock().lock();
         dynamicLightSources.add(lightSource);
-        lightSourcesLock.readLock().unlock();
-
     }
 
     /**
@@ -300,11 +640,16 @@ public class DynamicLightsReforged
         if (!lightSource.getDynamicLightWorld().isClientSide())
             return false;
 
-        boolean result;
-        lightSourcesLock.readLock().lock();
-        result = dynamicLightSources.contains(lightSource);
-        lightSourcesLock.readLock().unlock();
-        return result;
+        return dynamicLightSources.contains(lightSource);
+    }
+
+    /**
+     * Returns the number of dynamic light sources within the active light sources budget.
+     *
+     * @return the number of active dynamic light sources
+     */
+    public static int getActiveLightSourcesCount() {
+        return dynamicLightSources.getActiveCount();
     }
 
     /**
@@ -313,11 +658,7 @@ public class DynamicLightsReforged
      * @return the number of dynamic light sources emitting light
      */
     public static int getLightSourcesCount() {
-        int result = 0;
-        lightSourcesLock.readLock().lock();
-        result = dynamicLightSources.size();
-        lightSourcesLock.readLock().unlock();
-        return result;
+        return dynamicLightSources.size();
     }
 
     /**
@@ -326,43 +667,49 @@ public class DynamicLightsReforged
      * @param lightSource the light source to remove
      */
     public static void removeLightSource(@NotNull DynamicLightSource lightSource) {
-        lightSourcesLock.readLock().lock();
+        // Server-side sources are never tracked, and must not touch the registry from the server thread.
+        if (lightSource.getDynamicLightWorld() == null || !lightSource.getDynamicLightWorld().isClientSide())
+            return;
 
-        Iterator<DynamicLightSource> LightSources = dynamicLightSources.iterator();
-        DynamicLightSource it;
-        while (LightSources.hasNext()) {
-            it = LightSources.next();
-            if (it.equals(lightSource)) {
-                LightSources.remove();
-                if (Minecraft.getInstance().levelRenderer != null)
-                    lightSource.lambdynlights_scheduleTrackedChunksRebuild(Minecraft.getInstance().levelRenderer);
-                break;
-            }
-        }
+        // Only the sections lit by the removed light source are rebuilt.
+        dynamicLightSources.remove(lightSource);
+    }
+
+    /**
+     * Called when the client changes world.
+     * <p>
+     * The light sources, the section index and the volumes of the previous world are dropped with its registry at once,
+     * without rebuilding any section, and the new world starts with an empty registry.
+     *
+     * @param world the new world, or {@code null} if the client leaves the world
+     */
+    public static void onWorldChange(@Nullable ClientWorld world) {
+        if (dynamicLightSources.getWorld() == world)
+            return;
 
-        lightSourcesLock.readLock().unlock();
+        dynamicLightSources = new LightSourceRegistry(world);
+        unloadedChunks.clear();
+        rebuildScheduler.clear();
+        updateScheduler.reset();
+        fluidStateCache.clear();
+        // The budget of the new registry is applied at the next frame.
+        lastBudgetTick = clientTicks - BUDGET_INTERVAL_TICKS;
     }
 
     /**
-     * Clears light sources.
+     * Clears light sources, rebuilding the sections they lit.
      */
     public static void clearLightSources()
     {
-        lightSourcesLock.readLock().lock();
-
         Iterator<DynamicLightSource> LightSources = dynamicLightSources.iterator();
-        DynamicLightSource it;
         while (LightSources.hasNext()) {
-            it = LightSources.next();
+            LightSources.next();
             LightSources.remove();
-            if (Minecraft.getInstance().levelRenderer != null) {
-                if (it.getLuminance() > 0)
-                    it.resetDynamicLight();
-                it.lambdynlights_scheduleTrackedChunksRebuild(Minecraft.getInstance().levelRenderer);
-            }
         }
 
-        lightSourcesLock.readLock().unlock();
+        // The sections lit until now are rebuilt without dynamic light by the next frames.
+        dynamicLightSources.clear(rebuildScheduler::enqueue);
+        unloadedChunks.clear();
     }
 
     /**
@@ -372,23 +719,15 @@ public class DynamicLightsReforged
      */
     public static void removeLightSources(@NotNull Predicate<DynamicLightSource> filter)
     {
-        lightSourcesLock.readLock().lock();
-
         Iterator<DynamicLightSource> LightSources = dynamicLightSources.iterator();
         DynamicLightSource it;
         while (LightSources.hasNext()) {
             it = LightSources.next();
             if (filter.test(it)) {
                 LightSources.remove();
-                if (Minecraft.getInstance().levelRenderer != null) {
-                    if (it.getLuminance() > 0)
-                        it.resetDynamicLight();
-                    it.lambdynlights_scheduleTrackedChunksRebuild(Minecraft.getInstance().levelRenderer);
-                }
                 break;
             }
         }
-        lightSourcesLock.readLock().unlock();
     }
 
     /**
@@ -454,29 +793,38 @@ public class DynamicLightsReforged
      * @param chunkPos the packed chunk position
      */
     public static void scheduleChunkRebuild(@NotNull WorldRenderer renderer, long chunkPos) {
-        scheduleChunkRebuild(renderer, BlockPos.getX(chunkPos), BlockPos.getY(chunkPos), BlockPos.getZ(chunkPos));
+        scheduleChunkRebuild(renderer, PackedPositions.getX(chunkPos), PackedPositions.getY(chunkPos), PackedPositions.getZ(chunkPos));
     }
 
-    public static void scheduleChunkRebuild(@NotNull WorldRenderer renderer, int x, int y, int z) {
-        if (Minecraft.getInstance().level != null)
-            ((WorldRendererAccessor) renderer).dynlights_setSectionDirty(x, y, z, false);
+    /**
+     * Schedules a chunk rebuild at the specified chunk position in the current world renderer.
+     *
+     * @param chunkPos the packed chunk position
+     */
+    public static void scheduleChunkRebuild(long chunkPos) {
+        WorldRenderer renderer = Minecraft.getInstance().levelRenderer;
+        if (renderer != null)
+            scheduleChunkRebuild(renderer, chunkPos);
     }
 
     /**
-     * Updates the tracked chunk sets.
+     * Schedules a chunk rebuild at the specified chunk position.
+     * <p>
+     * The dynamic lights of the chunk are recomputed at the next publication, and the chunk is only rebuilt if its light levels changed.
      *
-     * @param chunkPos the packed chunk position
-     * @param old the set of old chunk coordinates to remove this chunk from it
-     * @param newPos the set of new chunk coordinates to add this chunk to it
-     */
-    public static void updateTrackedChunks(@NotNull BlockPos chunkPos, @Nullable LongOpenHashSet old, @Nullable LongOpenHashSet newPos) {
-        if (old != null || newPos != null) {
-            long pos = chunkPos.asLong();
-            if (old != null)
-                old.remove(pos);
-            if (newPos != null)
-                newPos.add(pos);
-        }
+     * @param renderer the renderer
+     * @param x the chunk X coordinate
+     * @param y the chunk Y coordinate
+     * @param z the chunk Z coordinate
+     */
+    public static void scheduleChunkRebuild(@NotNull WorldRenderer renderer, int x, int y, int z) {
+        dynamicLightSources.invalidateSection(PackedPositions.asLong(x, y, z));
+    }
+
+    private static void rebuildSection(@NotNull WorldRenderer renderer, long chunkPos, boolean important) {
+        if (Minecraft.getInstance().level != null)
+            ((WorldRendererAccessor) renderer).dynlights_setSectionDirty(PackedPositions.getX(chunkPos), PackedPositions.getY(chunkPos),
+                    PackedPositions.getZ(chunkPos), important);
     }
 
     /**
@@ -495,6 +843,54 @@ public class DynamicLightsReforged
         }
     }
 
+    /**
+     * Returns the luminance of the light source, which the registry stores while the light source is tracked.
+     *
+     * @param lightSource the light source
+     * @return the luminance, or {@code 0} if the light source is not tracked
+     */
+    public static int getLuminance(@NotNull DynamicLightSource lightSource) {
+        return dynamicLightSources.getLuminance(lightSource);
+    }
+
+    /**
+     * Sets the luminance of the light source, as evaluated by its tick.
+     * <p>
+     * A light source starting to emit light is tracked at once to store its luminance,
+     * and {@link #updateTracking(DynamicLightSource)} stops tracking it once it goes dark.
+     *
+     * @param lightSource the light source
+     * @param luminance the luminance
+     */
+    public static void setLuminance(@NotNull DynamicLightSource lightSource, int luminance) {
+        if (luminance > 0 && !dynamicLightSources.contains(lightSource))
+            lightSource.setDynamicLightEnabled(true);
+        dynamicLightSources.setLuminance(lightSource, luminance);
+    }
+
+    /**
+     * Returns the luminance of the brightest item equipped by the living entity.
+     * <p>
+     * The equipment luminance cache is only allocated once the entity is tracked,
+     * the other entities evaluate their equipment at each tick.
+     *
+     * @param entity the living entity
+     * @return the equipment luminance
+     */
+    public static int getEquipmentLuminance(@NotNull LivingEntity entity) {
+        DynamicLightSource lightSource = (DynamicLightSource) entity;
+        EquipmentLuminanceCache<LivingEntity, ItemStack> cache = dynamicLightSources.getEquipmentCache(lightSource);
+        if (cache == null) {
+            if (!EquipmentLuminanceCache.hasEquipment(EQUIPMENT_ACCESS, entity))
+                return 0;
+            if (!dynamicLightSources.contains(lightSource))
+                return EquipmentLuminanceCache.computeLuminance(EQUIPMENT_ACCESS, entity, isEyeInFluid(entity));
+            cache = new EquipmentLuminanceCache<>(EQUIPMENT_ACCESS);
+            dynamicLightSources.setEquipmentCache(lightSource, cache);
+        }
+        return cache.getLuminance(entity, isEyeInFluid(entity));
+    }
+
     /**
      * Returns the luminance from an item stack.
      *
@@ -506,4 +902,42 @@ public class DynamicLightsReforged
         return ItemLightSources.getLuminance(stack, submergedInWater);
     }
 
+    /**
+     * Returns whether the eyes of the entity are in a fluid.
+     *
+     * @param entity the entity
+     * @return {@code true} if the eyes of the entity are in a fluid, else {@code false}
+     */
+    public static boolean isEyeInFluid(@NotNull Entity entity) {
+        World world = entity.getCommandSenderWorld();
+        if (Minecraft.getInstance().isSameThread())
+            return fluidStateCache.isFluid(world, MathHelper.floor(entity.getX()), MathHelper.floor(entity.getEyeY()), MathHelper.floor(entity.getZ()));
+        BlockPos.Mutable eyePos = EYE_POS.get().set(entity.getX(), entity.getEyeY(), entity.getZ());
+        return !world.getFluidState(eyePos).isEmpty();
+    }
+
+    /**
+     * Returns whether the block at the specified position contains a fluid.
+     * <p>
+     * On the client thread, the fluid states are cached until the next client tick.
+     *
+     * @param world the world
+     * @param pos the block position
+     * @return {@code true} if the block contains a fluid, else {@code false}
+     */
+    public static boolean isFluid(@NotNull World world, @NotNull BlockPos pos) {
+        if (Minecraft.getInstance().isSameThread())
+            return fluidStateCache.isFluid(world, pos);
+        return !world.getFluidState(pos).isEmpty();
+    }
+
+    /**
+     * Returns the fluid state cache of the client thread.
+     *
+     * @return the fluid state cache
+     */
+    public static @NotNull FluidStateCache getFluidStateCache() {
+        return fluidStateCache;
+    }
+
 }
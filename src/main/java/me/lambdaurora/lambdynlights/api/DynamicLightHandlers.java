@@ -15,7 +15,6 @@ import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntityType;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -54,7 +53,7 @@ public final class DynamicLightHandlers
         registerDynamicLightHandler(EntityType.ITEM, entity -> DynamicLightsReforged.getLuminanceFromItemStack(entity.getItem(), entity.isUnderWater()));
         registerDynamicLightHandler(EntityType.ITEM_FRAME, entity -> {
             World world = entity.getCommandSenderWorld();
-            return DynamicLightsReforged.getLuminanceFromItemStack(entity.getItem(), !world.getFluidState(entity.blockPosition()).isEmpty());
+            return DynamicLightsReforged.getLuminanceFromItemStack(entity.getItem(), DynamicLightsReforged.isFluid(world, entity.blockPosition()));
         });
         registerDynamicLightHandler(EntityType.MAGMA_CUBE, entity -> (entity.squish > 0.6) ? 11 : 8);
         registerDynamicLightHandler(EntityType.SPECTRAL_ARROW, entity -> 8);
@@ -130,13 +129,13 @@ public final class DynamicLightHandlers
     @SuppressWarnings("unchecked")
     public static <T extends Entity> int getLuminanceFrom(@NotNull T entity)
     {
-        if (!DynamicLightsConfig.EntityLighting.get())
+        if (!DynamicLightsReforged.isEntityLightingEnabled())
             return 0;
 
         DynamicLightHandler<T> handler = (DynamicLightHandler<T>) getDynamicLightHandler(entity.getType());
         if (handler == null)
             return 0;
-        if (handler.isWaterSensitive(entity) && !entity.getCommandSenderWorld().getFluidState(new BlockPos(entity.getX(), entity.getEyeY(), entity.getZ())).isEmpty())
+        if (handler.isWaterSensitive(entity) && DynamicLightsReforged.isEyeInFluid(entity))
             return 0;
         return handler.getLuminance(entity);
     }
@@ -151,12 +150,12 @@ public final class DynamicLightHandlers
     @SuppressWarnings("unchecked")
     public static <T extends TileEntity> int getLuminanceFrom(@NotNull T entity)
     {
-        if (!DynamicLightsConfig.TileEntityLighting.get())
+        if (!DynamicLightsReforged.isTileEntityLightingEnabled())
             return 0;
         DynamicLightHandler<T> handler = (DynamicLightHandler<T>) getDynamicLightHandler(entity.getType());
         if (handler == null)
             return 0;
-        if (handler.isWaterSensitive(entity) && entity.getLevel() != null && !entity.getLevel().getFluidState(entity.getBlockPos()).isEmpty())
+        if (handler.isWaterSensitive(entity) && entity.getLevel() != null && DynamicLightsReforged.isFluid(entity.getLevel(), entity.getBlockPos()))
             return 0;
         return handler.getLuminance(entity);
     }
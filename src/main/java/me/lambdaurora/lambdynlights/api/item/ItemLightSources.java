@@ -36,6 +36,7 @@ public final class ItemLightSources
 {
     private static final List<ItemLightSource> ITEM_LIGHT_SOURCES = new ArrayList<>();
     private static final List<ItemLightSource> STATIC_ITEM_LIGHT_SOURCES = new ArrayList<>();
+    private static int generation = 0;
 
     private ItemLightSources()
     {
@@ -54,6 +55,7 @@ public final class ItemLightSources
         resourceManager.listResources("dynamiclights/item", path -> path.endsWith(".json")).forEach(id -> load(resourceManager, id));
 
         ITEM_LIGHT_SOURCES.addAll(STATIC_ITEM_LIGHT_SOURCES);
+        generation++;
     }
 
     private static void load(@NotNull IResourceManager resourceManager, @NotNull ResourceLocation resourceId)
@@ -109,6 +111,17 @@ public final class ItemLightSources
         }
 
         STATIC_ITEM_LIGHT_SOURCES.add(data);
+        generation++;
+    }
+
+    /**
+     * Returns the generation of the item light sources, which changes every time they are loaded or registered.
+     *
+     * @return The generation.
+     */
+    public static int getGeneration()
+    {
+        return generation;
     }
 
     /**
@@ -14,6 +14,14 @@ public class DynamicLightsConfig
     public static ForgeConfigSpec.ConfigValue<String> Quality;
     public static ForgeConfigSpec.ConfigValue<Boolean> EntityLighting;
     public static ForgeConfigSpec.ConfigValue<Boolean> TileEntityLighting;
+    public static ForgeConfigSpec.ConfigValue<String> Falloff;
+    public static ForgeConfigSpec.ConfigValue<Integer> MaxRebuildsPerFrame;
+    public static ForgeConfigSpec.ConfigValue<Integer> RebuildBudgetMicros;
+    public static ForgeConfigSpec.ConfigValue<Integer> ImportantRebuildsPerFrame;
+    public static ForgeConfigSpec.ConfigValue<Integer> FullRateDistance;
+    public static ForgeConfigSpec.ConfigValue<Integer> MidRangeTickInterval;
+    public static ForgeConfigSpec.ConfigValue<Integer> MaxActiveLightSources;
+    public static ForgeConfigSpec.ConfigValue<Boolean> MergeDuplicateLightSources;
 
     public static ForgeConfigSpec.ConfigValue<Boolean> OnlyUpdateOnPositionChange;
 
@@ -25,6 +33,14 @@ public class DynamicLightsConfig
             Quality = b.define("Quality Mode (OFF, SLOW, FAST, REALTIME)", "REALTIME");
             EntityLighting = b.define("Dynamic Entity Lighting", true);
             TileEntityLighting = b.define("Dynamic TileEntity Lighting", true);
+            Falloff = b.define("Light Falloff (LINEAR, QUADRATIC, SMOOTHSTEP)", "LINEAR");
+            MaxRebuildsPerFrame = b.defineInRange("Max Chunk Rebuilds Per Frame", 24, 1, 4096);
+            RebuildBudgetMicros = b.defineInRange("Chunk Rebuilds Budget Per Frame (microseconds)", 500, 1, 1000000);
+            ImportantRebuildsPerFrame = b.defineInRange("Important Chunk Rebuilds Per Frame", 2, 0, 4096);
+            FullRateDistance = b.defineInRange("Light Sources Full Rate Ticking Distance (blocks)", 32, 0, 4096);
+            MidRangeTickInterval = b.defineInRange("Mid Range Light Sources Ticking Interval (ticks)", 4, 1, 200);
+            MaxActiveLightSources = b.defineInRange("Max Active Light Sources", 256, 1, 65536);
+            MergeDuplicateLightSources = b.define("Merge Light Sources Sharing A Position", true);
             OnlyUpdateOnPositionChange = b.define("Only Update On Position Change", true);
         });
 
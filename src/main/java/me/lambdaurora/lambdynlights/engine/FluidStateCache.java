@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.engine;
+
+import me.lambdaurora.lambdynlights.core.PositionFlagCache;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Caches whether blocks contain a fluid for the duration of a client tick, as the light sources sharing a block
+ * all check it for their water sensitivity.
+ * <p>
+ * The cache is only used on the client thread, and is cleared at every client tick and world change.
+ */
+public final class FluidStateCache
+{
+    private final PositionFlagCache states = new PositionFlagCache();
+    private final BlockPos.Mutable scratchPos = new BlockPos.Mutable();
+    private final LongPredicate loader = pos -> !this.world.getFluidState(this.scratchPos.set(BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos))).isEmpty();
+    private World world;
+
+    /**
+     * Returns whether the block at the specified position contains a fluid.
+     *
+     * @param world the world
+     * @param x the block X coordinate
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate
+     * @return {@code true} if the block contains a fluid, else {@code false}
+     */
+    public boolean isFluid(@NotNull World world, int x, int y, int z)
+    {
+        if (world != this.world) {
+            this.states.clear();
+            this.world = world;
+        }
+
+        return this.states.get(BlockPos.asLong(x, y, z), this.loader);
+    }
+
+    /**
+     * Returns whether the block at the specified position contains a fluid.
+     *
+     * @param world the world
+     * @param pos the block position
+     * @return {@code true} if the block contains a fluid, else {@code false}
+     */
+    public boolean isFluid(@NotNull World world, @NotNull BlockPos pos)
+    {
+        return this.isFluid(world, pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Clears the cached fluid states.
+     */
+    public void clear()
+    {
+        this.states.clear();
+        this.world = null;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return this.states.getHits();
+    }
+
+    /**
+     * Returns the number of lookups which queried the world.
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return this.states.getMisses();
+    }
+
+    /**
+     * Returns the ratio of lookups answered from the cache.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate()
+    {
+        return this.states.getHitRate();
+    }
+}
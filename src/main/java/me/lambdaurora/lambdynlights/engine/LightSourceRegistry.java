@@ -0,0 +1,431 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.engine;
+
+import it.unimi.dsi.fastutil.longs.LongSet;
+import me.lambdaurora.lambdynlights.DynamicLightSource;
+import me.lambdaurora.lambdynlights.core.EquipmentLuminanceCache;
+import me.lambdaurora.lambdynlights.core.FalloffCurve;
+import me.lambdaurora.lambdynlights.core.LightEngine;
+import me.lambdaurora.lambdynlights.core.LightSourceAccess;
+import me.lambdaurora.lambdynlights.core.LightSourceSlots;
+import me.lambdaurora.lambdynlights.core.LightSnapshot;
+import me.lambdaurora.lambdynlights.core.PackedLightSources;
+import me.lambdaurora.lambdynlights.core.SectionRebuildSink;
+import me.lambdaurora.lambdynlights.core.SectionSourceIndex;
+import me.lambdaurora.lambdynlights.core.SectionTracker;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+
+/**
+ * Registry of the tracked dynamic light sources of a world, adapting them to the {@link LightEngine}.
+ * <p>
+ * Each world has its own registry, section index and volumes, so leaving a world drops them at once
+ * instead of removing every light source.
+ * <p>
+ * The registry is only mutated on the client thread, the other threads only read the last published {@link LightSnapshot}.
+ * <p>
+ * The light sources, their section trackers, luminances and equipment caches, and the active light sources budget
+ * are kept in {@link LightSourceSlots}, so only the light sources emitting light carry this state.
+ * <p>
+ * The registry holds strong references, so the entities and block entities which leave the world without being removed
+ * are purged when their chunk unloads, or swept once they are not seen by a light sources pass anymore.
+ * The other light sources are not seen by the light sources pass, so they are only removed explicitly.
+ */
+public final class LightSourceRegistry implements Iterable<DynamicLightSource>
+{
+    private static final LightSourceAccess<DynamicLightSource> ACCESS = new LightSourceAccess<DynamicLightSource>()
+    {
+        @Override
+        public int getSlot(@NotNull DynamicLightSource source)
+        {
+            return source.lambdynlights_getSlot();
+        }
+
+        @Override
+        public void setSlot(@NotNull DynamicLightSource source, int slot)
+        {
+            source.lambdynlights_setSlot(slot);
+        }
+
+        @Override
+        public double getX(@NotNull DynamicLightSource source)
+        {
+            return source.getDynamicLightX();
+        }
+
+        @Override
+        public double getY(@NotNull DynamicLightSource source)
+        {
+            return source.getDynamicLightY();
+        }
+
+        @Override
+        public double getZ(@NotNull DynamicLightSource source)
+        {
+            return source.getDynamicLightZ();
+        }
+
+        @Override
+        public int getLuminance(@NotNull DynamicLightSource source)
+        {
+            return source.getLuminance();
+        }
+
+        @Override
+        public void untrack(@NotNull DynamicLightSource source)
+        {
+            source.lambdynlights_untrackSections();
+        }
+    };
+
+    private final World world;
+    private final LightSourceSlots<DynamicLightSource> lightSources = new LightSourceSlots<>(ACCESS);
+    private final LightEngine engine = new LightEngine();
+    private final SectionSourceIndex<DynamicLightSource> sectionIndex = new SectionSourceIndex<>();
+    private FalloffCurve falloff = FalloffCurve.LINEAR;
+    private boolean mergeDuplicates = false;
+    private boolean changed = false;
+
+    public LightSourceRegistry(@Nullable World world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * Returns the world of the light sources of this registry.
+     *
+     * @return the world, or {@code null} if this registry is not bound to any world
+     */
+    public @Nullable World getWorld()
+    {
+        return this.world;
+    }
+
+    /**
+     * Adds the light source to the registry.
+     * <p>
+     * Only entities and block entities are purged with their chunk and swept, as only they are seen by the light sources pass.
+     *
+     * @param lightSource the light source
+     * @return {@code true} if the light source was not already tracked, else {@code false}
+     */
+    public boolean add(@NotNull DynamicLightSource lightSource)
+    {
+        return this.lightSources.add(lightSource, lightSource instanceof Entity || lightSource instanceof TileEntity);
+    }
+
+    /**
+     * Removes the light source from the registry, and stops tracking its sections.
+     *
+     * @param lightSource the light source
+     * @return {@code true} if the light source was tracked, else {@code false}
+     */
+    public boolean remove(@NotNull DynamicLightSource lightSource)
+    {
+        return this.lightSources.remove(lightSource);
+    }
+
+    /**
+     * Returns whether the light source is tracked or not.
+     *
+     * @param lightSource the light source
+     * @return {@code true} if the light source is tracked, else {@code false}
+     */
+    public boolean contains(@NotNull DynamicLightSource lightSource)
+    {
+        return this.lightSources.contains(lightSource);
+    }
+
+    /**
+     * Returns the number of tracked light sources.
+     *
+     * @return the number of tracked light sources
+     */
+    public int size()
+    {
+        return this.lightSources.size();
+    }
+
+    /**
+     * Returns the luminance of the light source, as evaluated by its last tick.
+     *
+     * @param lightSource the light source
+     * @return the luminance, or {@code 0} if the light source is not tracked
+     */
+    public int getLuminance(@NotNull DynamicLightSource lightSource)
+    {
+        return this.lightSources.getLuminance(lightSource);
+    }
+
+    /**
+     * Sets the luminance of the tracked light source.
+     *
+     * @param lightSource the light source
+     * @param luminance the luminance
+     */
+    public void setLuminance(@NotNull DynamicLightSource lightSource, int luminance)
+    {
+        this.lightSources.setLuminance(lightSource, luminance);
+    }
+
+    /**
+     * Returns the equipment luminance cache of the light source.
+     *
+     * @param lightSource the light source
+     * @return the equipment luminance cache, or {@code null} if the light source has none or is not tracked
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable EquipmentLuminanceCache<LivingEntity, ItemStack> getEquipmentCache(@NotNull DynamicLightSource lightSource)
+    {
+        return (EquipmentLuminanceCache<LivingEntity, ItemStack>) this.lightSources.getAttachment(lightSource);
+    }
+
+    /**
+     * Sets the equipment luminance cache of the tracked light source, which is dropped with the light source.
+     *
+     * @param lightSource the light source
+     * @param cache the equipment luminance cache
+     */
+    public void setEquipmentCache(@NotNull DynamicLightSource lightSource, @NotNull EquipmentLuminanceCache<LivingEntity, ItemStack> cache)
+    {
+        this.lightSources.setAttachment(lightSource, cache);
+    }
+
+    /**
+     * Starts a new light sources pass, every light source still in the world is expected to be {@linkplain #markSeen(DynamicLightSource) seen} by it.
+     */
+    public void nextGeneration()
+    {
+        this.lightSources.nextGeneration();
+    }
+
+    /**
+     * Marks the light source as seen by the current light sources pass.
+     *
+     * @param lightSource the light source
+     */
+    public void markSeen(@NotNull DynamicLightSource lightSource)
+    {
+        this.lightSources.markSeen(lightSource);
+    }
+
+    /**
+     * Removes the entities and block entities which were not seen by the current light sources pass, as they left the world without being removed.
+     *
+     * @return the number of removed light sources
+     */
+    public int sweep()
+    {
+        return this.lightSources.sweep();
+    }
+
+    /**
+     * Removes the entities and block entities standing in the specified chunks, once they unloaded.
+     *
+     * @param chunks the packed chunk positions
+     * @return the number of removed light sources
+     */
+    public int purgeChunks(@NotNull LongSet chunks)
+    {
+        return this.lightSources.purgeChunks(chunks);
+    }
+
+    /**
+     * Returns the section tracker of the light source.
+     *
+     * @param lightSource the light source
+     * @return the section tracker, or {@code null} if the light source is not tracked
+     */
+    public @Nullable SectionTracker getTracker(@NotNull DynamicLightSource lightSource)
+    {
+        return this.lightSources.getTracker(lightSource);
+    }
+
+    /**
+     * Returns the light source in the specified slot.
+     *
+     * @param slot the slot, lower than {@link #size()}
+     * @return the light source
+     */
+    public @NotNull DynamicLightSource get(int slot)
+    {
+        return this.lightSources.get(slot);
+    }
+
+    /**
+     * Returns whether the light source lights its surroundings, or is demoted by the active light sources budget.
+     *
+     * @param lightSource the light source
+     * @return {@code true} if the light source is active, else {@code false}
+     */
+    public boolean isActive(@NotNull DynamicLightSource lightSource)
+    {
+        return this.lightSources.isActive(lightSource);
+    }
+
+    /**
+     * Returns the number of active light sources.
+     *
+     * @return the number of active light sources
+     */
+    public int getActiveCount()
+    {
+        return this.lightSources.getActiveCount();
+    }
+
+    /**
+     * Selects the most important light sources within the active light sources budget, and demotes the other ones.
+     *
+     * @param maxActive the maximum number of active light sources
+     * @param cameraX the camera X coordinate
+     * @param cameraY the camera Y coordinate
+     * @param cameraZ the camera Z coordinate
+     * @param favored the light source which is always active, like the local player
+     * @see LightSourceSlots#applyBudget(int, double, double, double, Object)
+     */
+    public void applyBudget(int maxActive, double cameraX, double cameraY, double cameraZ, @Nullable DynamicLightSource favored)
+    {
+        this.lightSources.applyBudget(maxActive, cameraX, cameraY, cameraZ, favored);
+    }
+
+    /**
+     * Removes every light source and every lit section at once.
+     *
+     * @param sink the sink receiving the sections which were lit
+     */
+    public void clear(@NotNull SectionRebuildSink sink)
+    {
+        this.lightSources.clear();
+        this.engine.clear(sink);
+        this.sectionIndex.clear();
+    }
+
+    /**
+     * Returns the falloff curve of the dynamic lights.
+     *
+     * @return the falloff curve
+     */
+    public @NotNull FalloffCurve getFalloff()
+    {
+        return this.falloff;
+    }
+
+    /**
+     * Sets the falloff curve of the dynamic lights, applied at the next publication.
+     *
+     * @param falloff the falloff curve
+     * @return {@code true} if the falloff curve changed, else {@code false}
+     */
+    public boolean setFalloff(@NotNull FalloffCurve falloff)
+    {
+        if (this.falloff == falloff)
+            return false;
+        this.falloff = falloff;
+        this.changed = true;
+        return true;
+    }
+
+    /**
+     * Returns whether the light sources sharing a position are merged.
+     *
+     * @return {@code true} if the light sources sharing a position are merged, else {@code false}
+     */
+    public boolean isMergingDuplicates()
+    {
+        return this.mergeDuplicates;
+    }
+
+    /**
+     * Sets whether the light sources sharing a position are merged, applied at the next publication.
+     *
+     * @param mergeDuplicates {@code true} to merge the light sources sharing a position, else {@code false}
+     * @return {@code true} if the setting changed, else {@code false}
+     * @see PackedLightSources.Builder#mergeDuplicates(boolean)
+     */
+    public boolean setMergeDuplicates(boolean mergeDuplicates)
+    {
+        if (this.mergeDuplicates == mergeDuplicates)
+            return false;
+        this.mergeDuplicates = mergeDuplicates;
+        this.changed = true;
+        return true;
+    }
+
+    /**
+     * Marks the dynamic lights of the specified chunk section as outdated.
+     *
+     * @param sectionPos the packed chunk section position
+     */
+    public void invalidateSection(long sectionPos)
+    {
+        this.engine.invalidateSection(sectionPos);
+    }
+
+    /**
+     * Packs the light sources, merging the ones sharing a position, rebuilds the outdated section volumes
+     * and publishes a new snapshot if anything changed since the last publication.
+     *
+     * @param sink the sink receiving the sections whose light levels changed
+     */
+    public void publish(@NotNull SectionRebuildSink sink)
+    {
+        if (!this.changed && !this.lightSources.isChanged() && !this.engine.isDirty())
+            return;
+
+        PackedLightSources.Builder builder = new PackedLightSources.Builder(this.lightSources.size(), this.falloff).mergeDuplicates(this.mergeDuplicates);
+        this.lightSources.pack(builder);
+        this.engine.publish(builder.build(), this.lightSources.size(), sink);
+        this.changed = false;
+    }
+
+    /**
+     * Returns the light engine fed by this registry.
+     *
+     * @return the light engine
+     */
+    public @NotNull LightEngine getEngine()
+    {
+        return this.engine;
+    }
+
+    /**
+     * Returns the index of the light sources lighting each chunk section.
+     *
+     * @return the section index
+     */
+    public @NotNull SectionSourceIndex<DynamicLightSource> getSectionIndex()
+    {
+        return this.sectionIndex;
+    }
+
+    /**
+     * Returns the last published snapshot.
+     *
+     * @return the snapshot
+     */
+    public @NotNull LightSnapshot getSnapshot()
+    {
+        return this.engine.getSnapshot();
+    }
+
+    @Override
+    public @NotNull Iterator<DynamicLightSource> iterator()
+    {
+        return this.lightSources.iterator();
+    }
+}
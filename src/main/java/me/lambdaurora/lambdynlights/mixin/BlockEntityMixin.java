@@ -9,17 +9,16 @@
 
 package me.lambdaurora.lambdynlights.mixin;
 
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import me.lambdaurora.lambdynlights.DynamicLightSource;
 import me.lambdaurora.lambdynlights.DynamicLightsReforged;
 import me.lambdaurora.lambdynlights.api.DynamicLightHandlers;
 import me.lambdaurora.lambdynlights.config.DynamicLightsConfig;
+import me.lambdaurora.lambdynlights.core.SectionRebuildSink;
+import me.lambdaurora.lambdynlights.core.SectionTracker;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.WorldRenderer;
 import net.minecraft.tileentity.TileEntity;
-import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.NotNull;
 import org.spongepowered.asm.mixin.Mixin;
@@ -43,10 +42,8 @@ public abstract class BlockEntityMixin implements DynamicLightSource
 
     @Shadow
     protected boolean remove;
-    private int lambdynlights_luminance = 0;
-    private int lambdynlights_lastLuminance = 0;
-    private long lambdynlights_lastUpdate = 0;
-    private LongOpenHashSet trackedLitChunkPos = new LongOpenHashSet();
+    // The luminance and the section tracker live in the registry while the block entity is tracked.
+    private int lambdynlights_slot = -1;
 
     @Override
     public double getDynamicLightX()
@@ -81,7 +78,9 @@ public abstract class BlockEntityMixin implements DynamicLightSource
     @Override
     public void resetDynamicLight()
     {
-        this.lambdynlights_lastLuminance = 0;
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker != null)
+            tracker.reset();
     }
 
     @Override
@@ -90,78 +89,59 @@ public abstract class BlockEntityMixin implements DynamicLightSource
         // We do not want to update the entity on the server.
         if (this.level == null || !this.level.isClientSide())
             return;
-        if (!this.remove) {
-            this.lambdynlights_luminance = DynamicLightHandlers.getLuminanceFrom((TileEntity) (Object) this);
-            DynamicLightsReforged.updateTracking(this);
-
-            if (!this.isDynamicLightEnabled()) {
-                this.lambdynlights_lastLuminance = 0;
-            }
-        }
+        if (!this.remove)
+            DynamicLightsReforged.setLuminance(this, DynamicLightHandlers.getLuminanceFrom((TileEntity) (Object) this));
     }
 
     @Override
     public int getLuminance()
     {
-        return this.lambdynlights_luminance;
+        return DynamicLightsReforged.getLuminance(this);
     }
 
     @Override
     public boolean shouldUpdateDynamicLight()
     {
-        return DynamicLightsReforged.ShouldUpdateDynamicLights();
+        return DynamicLightsReforged.isEnabled();
     }
 
     @Override
     public boolean lambdynlights_updateDynamicLight(@NotNull WorldRenderer renderer)
     {
-        if (!this.shouldUpdateDynamicLight())
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker == null || !this.shouldUpdateDynamicLight())
             return false;
 
-        int luminance = this.getLuminance();
-
-        if (luminance != this.lambdynlights_lastLuminance) {
-            this.lambdynlights_lastLuminance = luminance;
-
-            if (this.trackedLitChunkPos.isEmpty()) {
-                BlockPos.Mutable chunkPos = new BlockPos.Mutable(MathHelper.intFloorDiv(this.worldPosition.getX(), 16),
-                        MathHelper.intFloorDiv(this.worldPosition.getY(), 16),
-                        MathHelper.intFloorDiv(this.worldPosition.getZ(), 16));
-
-                DynamicLightsReforged.updateTrackedChunks(chunkPos, null, this.trackedLitChunkPos);
-
-                Direction directionX = (this.worldPosition.getX() & 15) >= 8 ? Direction.EAST : Direction.WEST;
-                Direction directionY = (this.worldPosition.getY() & 15) >= 8 ? Direction.UP : Direction.DOWN;
-                Direction directionZ = (this.worldPosition.getZ() & 15) >= 8 ? Direction.SOUTH : Direction.NORTH;
-
-                for (int i = 0; i < 7; i++) {
-                    if (i % 4 == 0) {
-                        chunkPos.move(directionX); // X
-                    } else if (i % 4 == 1) {
-                        chunkPos.move(directionZ); // XZ
-                    } else if (i % 4 == 2) {
-                        chunkPos.move(directionX.getOpposite()); // Z
-                    } else {
-                        chunkPos.move(directionZ.getOpposite()); // origin
-                        chunkPos.move(directionY); // Y
-                    }
-                    DynamicLightsReforged.updateTrackedChunks(chunkPos, null, this.trackedLitChunkPos);
-                }
-            }
-
-            // Schedules the rebuild of chunks.
-            this.lambdynlights_scheduleTrackedChunksRebuild(renderer);
-            return true;
-        }
-        return false;
+        return tracker.updateStatic(this.worldPosition.getX(), this.worldPosition.getY(), this.worldPosition.getZ(),
+                this.getLuminance(), DynamicLightsReforged.getFalloff(), DynamicLightsReforged.REBUILD_SINK, DynamicLightsReforged.getSectionIndex(), this);
     }
 
     @Override
     public void lambdynlights_scheduleTrackedChunksRebuild(@NotNull WorldRenderer renderer)
     {
-        if (this.level == Minecraft.getInstance().level)
-        for (long pos : this.trackedLitChunkPos) {
-            DynamicLightsReforged.scheduleChunkRebuild(renderer, pos);
-        }
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker != null && this.level == Minecraft.getInstance().level)
+            tracker.scheduleRebuild(pos -> DynamicLightsReforged.scheduleChunkRebuild(renderer, pos));
+    }
+
+    @Override
+    public void lambdynlights_untrackSections()
+    {
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker != null)
+            tracker.untrack(this.level == Minecraft.getInstance().level ? DynamicLightsReforged.REBUILD_SINK : SectionRebuildSink.NONE,
+                    DynamicLightsReforged.getSectionIndex(), this);
+    }
+
+    @Override
+    public int lambdynlights_getSlot()
+    {
+        return this.lambdynlights_slot;
+    }
+
+    @Override
+    public void lambdynlights_setSlot(int slot)
+    {
+        this.lambdynlights_slot = slot;
     }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.mixin;
+
+import me.lambdaurora.lambdynlights.DynamicLightsReforged;
+import net.minecraft.client.multiplayer.ClientChunkProvider;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Purges the light sources of the unloaded client chunks, as their block entities are not always removed.
+ */
+@Mixin(ClientChunkProvider.class)
+public class ClientChunkProviderMixin
+{
+    @Inject(method = "drop", at = @At("HEAD"))
+    private void onDrop(int x, int z, CallbackInfo ci)
+    {
+        DynamicLightsReforged.onChunkUnload(x, z);
+    }
+}
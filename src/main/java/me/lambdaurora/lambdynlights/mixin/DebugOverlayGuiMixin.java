@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2020 LambdAurora <aurora42lambda@gmail.com>
+ *
+ * This file is part of LambDynamicLights.
+ *
+ * Licensed under the MIT license. For more information,
+ * see the LICENSE file.
+ */
+
+package me.lambdaurora.lambdynlights.mixin;
+
+import me.lambdaurora.lambdynlights.DynamicLightsReforged;
+import me.lambdaurora.lambdynlights.core.LightEngine;
+import me.lambdaurora.lambdynlights.engine.FluidStateCache;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.overlay.DebugOverlayGui;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.text.TextFormatting;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+
+/**
+ * Adds debug strings for dynamic light sources tracking and light level queries.
+ */
+@Mixin(DebugOverlayGui.class)
+public class DebugOverlayGuiMixin
+{
+    @Inject(method = "getGameInformation", at = @At("RETURN"))
+    private void onGetGameInformation(CallbackInfoReturnable<List<String>> cir)
+    {
+        List<String> list = cir.getReturnValue();
+        StringBuilder builder = new StringBuilder("Dynamic Light Sources: ");
+        builder.append(DynamicLightsReforged.getLightSourcesCount())
+                .append(" (A: ")
+                .append(DynamicLightsReforged.getActiveLightSourcesCount())
+                .append(" ; P: ")
+                .append(DynamicLightsReforged.getLightSnapshot().getLightSources().size())
+                .append(" ; U: ")
+                .append(DynamicLightsReforged.getLastUpdateCount());
+
+        if (!DynamicLightsReforged.isEnabled()) {
+            builder.append(" ; ");
+            builder.append(TextFormatting.RED);
+            builder.append("Disabled");
+            builder.append(TextFormatting.RESET);
+        }
+
+        builder.append(')');
+        list.add(builder.toString());
+
+        list.add(String.format("Dynamic Light Tick: %d sources in %d µs",
+                DynamicLightsReforged.getLastTickedCount(), DynamicLightsReforged.getLastTickNanos() / 1000L));
+
+        list.add(String.format("Dynamic Light Purges: %d with their chunk, %d leaked",
+                DynamicLightsReforged.getPurgedLightSourcesCount(), DynamicLightsReforged.getLeakedLightSourcesCount()));
+
+        FluidStateCache fluidStateCache = DynamicLightsReforged.getFluidStateCache();
+        list.add(String.format("Dynamic Light Fluid Cache: %d hits, %d misses (%.1f%%)",
+                fluidStateCache.getHits(), fluidStateCache.getMisses(), fluidStateCache.getHitRate() * 100.0));
+
+        LightEngine engine = DynamicLightsReforged.getLightEngine();
+        list.add(String.format("Dynamic Light Rebuilds: %d requested, %d queued, %d issued, %d deferred",
+                engine.getLastRequestedRebuilds(), engine.getLastQueuedRebuilds(), engine.getLastIssuedRebuilds(),
+                DynamicLightsReforged.getDeferredRebuildsCount()));
+
+        Entity camera = Minecraft.getInstance().getCameraEntity();
+        if (camera != null)
+            list.add(String.format("Dynamic Light Sections: %d lit, %d sources here",
+                    DynamicLightsReforged.getSectionIndex().size(), DynamicLightsReforged.getLightSourcesAt(camera.blockPosition()).size()));
+    }
+}
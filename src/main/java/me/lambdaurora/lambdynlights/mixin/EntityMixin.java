@@ -9,18 +9,16 @@
 
 package me.lambdaurora.lambdynlights.mixin;
 
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import me.lambdaurora.lambdynlights.DynamicLightSource;
 import me.lambdaurora.lambdynlights.DynamicLightsReforged;
 import me.lambdaurora.lambdynlights.api.DynamicLightHandlers;
 import me.lambdaurora.lambdynlights.config.DynamicLightsConfig;
+import me.lambdaurora.lambdynlights.core.SectionRebuildSink;
+import me.lambdaurora.lambdynlights.core.SectionTracker;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.WorldRenderer;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
-import net.minecraft.util.Direction;
-import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.NotNull;
 import org.spongepowered.asm.mixin.Mixin;
@@ -51,42 +49,14 @@ public abstract class EntityMixin implements DynamicLightSource {
     @Shadow
     public abstract double getY();
 
-    @Shadow
-    public int xChunk;
-    @Shadow
-    public int zChunk;
-
     @Shadow
     public abstract boolean isOnFire();
 
     @Shadow
     public abstract EntityType<?> getType();
 
-    @Shadow
-    public abstract BlockPos blockPosition();
-
-    private int lambdynlights_luminance = 0;
-    private int lambdynlights_lastLuminance = 0;
-    private long lambdynlights_lastUpdate = 0;
-    private double lambdynlights_prevX;
-    private double lambdynlights_prevY;
-    private double lambdynlights_prevZ;
-    private LongOpenHashSet trackedLitChunkPos = new LongOpenHashSet();
-
-    @Inject(method = "tick", at = @At("TAIL"))
-    public void onTick(CallbackInfo ci) {
-        // We do not want to update the entity on the server.
-        if (this.level.isClientSide()) {
-            if (this.removed) {
-                this.setDynamicLightEnabled(false);
-            } else {
-                this.dynamicLightTick();
-                if (!DynamicLightsConfig.EntityLighting.get() && this.getType() != EntityType.PLAYER)
-                    this.lambdynlights_luminance = 0;
-                DynamicLightsReforged.updateTracking(this);
-            }
-        }
-    }
+    // The luminance and the section tracker live in the registry while the entity is tracked.
+    private int lambdynlights_slot = -1;
 
     @Inject(method = "remove", at = @At("TAIL"))
     public void onRemove(CallbackInfo ci) {
@@ -116,39 +86,40 @@ public abstract class EntityMixin implements DynamicLightSource {
 
     @Override
     public void resetDynamicLight() {
-        this.lambdynlights_lastLuminance = 0;
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker != null)
+            tracker.reset();
     }
 
     @Override
     public boolean shouldUpdateDynamicLight() {
-        return DynamicLightsReforged.ShouldUpdateDynamicLights();
+        return DynamicLightsReforged.isEnabled();
     }
 
     @Override
     public void dynamicLightTick() {
-        this.lambdynlights_luminance = this.isOnFire() ? 15 : 0;
+        int luminance = this.isOnFire() ? 15 : 0;
 
-        int luminance = DynamicLightHandlers.getLuminanceFrom((Entity) (Object) this);
-        if (luminance > this.lambdynlights_luminance)
-            this.lambdynlights_luminance = luminance;
+        int handlerLuminance = DynamicLightHandlers.getLuminanceFrom((Entity) (Object) this);
+        if (handlerLuminance > luminance)
+            luminance = handlerLuminance;
+
+        if (!DynamicLightsReforged.isEntityLightingEnabled() && this.getType() != EntityType.PLAYER)
+            luminance = 0;
+
+        DynamicLightsReforged.setLuminance(this, luminance);
     }
 
     @Override
     public int getLuminance() {
-        return this.lambdynlights_luminance;
+        return DynamicLightsReforged.getLuminance(this);
     }
 
     @Override
     public boolean lambdynlights_updateDynamicLight(@NotNull WorldRenderer renderer) {
-        if (!this.shouldUpdateDynamicLight())
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker == null || !this.shouldUpdateDynamicLight())
             return false;
-        double deltaX = this.getX() - this.lambdynlights_prevX;
-        double deltaY = this.getY() - this.lambdynlights_prevY;
-        double deltaZ = this.getZ() - this.lambdynlights_prevZ;
-
-        int luminance = this.getLuminance();
-
-
         double minDelta = 0D;
         String mode = DynamicLightsConfig.Quality.get();
         if (Objects.equals(mode, "SLOW"))
@@ -157,55 +128,32 @@ public abstract class EntityMixin implements DynamicLightSource {
         if (Objects.equals(mode, "FAST") )
             minDelta = 0.20D;
 
-
-        if (Math.abs(deltaX) > minDelta || Math.abs(deltaY) > minDelta || Math.abs(deltaZ) > minDelta || luminance != this.lambdynlights_lastLuminance) {
-            this.lambdynlights_prevX = this.getX();
-            this.lambdynlights_prevY = this.getY();
-            this.lambdynlights_prevZ = this.getZ();
-            this.lambdynlights_lastLuminance = luminance;
-
-            LongOpenHashSet newPos = new LongOpenHashSet();
-
-            if (luminance > 0) {
-                BlockPos.Mutable chunkPos = new BlockPos.Mutable(this.xChunk, MathHelper.intFloorDiv((int) this.getEyeY(), 16), this.zChunk);
-
-                DynamicLightsReforged.scheduleChunkRebuild(renderer, chunkPos);
-                DynamicLightsReforged.updateTrackedChunks(chunkPos, this.trackedLitChunkPos, newPos);
-
-                Direction directionX = (this.blockPosition().getX() & 15) >= 8 ? Direction.EAST : Direction.WEST;
-                Direction directionY = (MathHelper.fastFloor(this.getEyeY()) & 15) >= 8 ? Direction.UP : Direction.DOWN;
-                Direction directionZ = (this.blockPosition().getZ() & 15) >= 8 ? Direction.SOUTH : Direction.NORTH;
-
-                for (int i = 0; i < 7; i++) {
-                    if (i % 4 == 0) {
-                        chunkPos.move(directionX); // X
-                    } else if (i % 4 == 1) {
-                        chunkPos.move(directionZ); // XZ
-                    } else if (i % 4 == 2) {
-                        chunkPos.move(directionX.getOpposite()); // Z
-                    } else {
-                        chunkPos.move(directionZ.getOpposite()); // origin
-                        chunkPos.move(directionY); // Y
-                    }
-                    DynamicLightsReforged.scheduleChunkRebuild(renderer, chunkPos);
-                    DynamicLightsReforged.updateTrackedChunks(chunkPos, this.trackedLitChunkPos, newPos);
-                }
-            }
-
-            // Schedules the rebuild of removed chunks.
-            this.lambdynlights_scheduleTrackedChunksRebuild(renderer);
-            // Update tracked lit chunks.
-            this.trackedLitChunkPos = newPos;
-            return true;
-        }
-        return false;
+        return tracker.update(this.getX(), this.getEyeY(), this.getZ(), this.getLuminance(),
+                DynamicLightsReforged.getFalloff(), minDelta, DynamicLightsReforged.REBUILD_SINK, DynamicLightsReforged.getSectionIndex(), this);
     }
 
     @Override
     public void lambdynlights_scheduleTrackedChunksRebuild(@NotNull WorldRenderer renderer) {
-        if (Minecraft.getInstance().level == this.level)
-            for (long pos : this.trackedLitChunkPos) {
-                DynamicLightsReforged.scheduleChunkRebuild(renderer, pos);
-            }
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker != null && Minecraft.getInstance().level == this.level)
+            tracker.scheduleRebuild(pos -> DynamicLightsReforged.scheduleChunkRebuild(renderer, pos));
+    }
+
+    @Override
+    public void lambdynlights_untrackSections() {
+        SectionTracker tracker = DynamicLightsReforged.getSectionTracker(this);
+        if (tracker != null)
+            tracker.untrack(Minecraft.getInstance().level == this.level ? DynamicLightsReforged.REBUILD_SINK : SectionRebuildSink.NONE,
+                    DynamicLightsReforged.getSectionIndex(), this);
+    }
+
+    @Override
+    public int lambdynlights_getSlot() {
+        return this.lambdynlights_slot;
+    }
+
+    @Override
+    public void lambdynlights_setSlot(int slot) {
+        this.lambdynlights_slot = slot;
     }
 }
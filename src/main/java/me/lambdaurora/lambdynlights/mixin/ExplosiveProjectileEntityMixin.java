@@ -11,7 +11,6 @@ package me.lambdaurora.lambdynlights.mixin;
 
 import me.lambdaurora.lambdynlights.DynamicLightSource;
 import me.lambdaurora.lambdynlights.DynamicLightsReforged;
-import me.lambdaurora.lambdynlights.config.DynamicLightsConfig;
 import net.minecraft.entity.projectile.DamagingProjectileEntity;
 import org.spongepowered.asm.mixin.Mixin;
 
@@ -21,14 +20,13 @@ public abstract class ExplosiveProjectileEntityMixin implements DynamicLightSour
     @Override
     public void dynamicLightTick()
     {
-        if (!this.isDynamicLightEnabled())
-            this.setDynamicLightEnabled(true);
+        // The luminance is constant, the tracking is updated by the light sources pass.
     }
 
     @Override
     public int getLuminance()
     {
-        if (DynamicLightsConfig.EntityLighting.get())
+        if (DynamicLightsReforged.isEntityLightingEnabled())
             return 14;
         return 0;
     }
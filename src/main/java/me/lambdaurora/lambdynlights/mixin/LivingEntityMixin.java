@@ -12,20 +12,15 @@ package me.lambdaurora.lambdynlights.mixin;
 import me.lambdaurora.lambdynlights.DynamicLightSource;
 import me.lambdaurora.lambdynlights.DynamicLightsReforged;
 import me.lambdaurora.lambdynlights.api.DynamicLightHandlers;
-import me.lambdaurora.lambdynlights.config.DynamicLightsConfig;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.LivingEntity;
-import net.minecraft.item.ItemStack;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import org.spongepowered.asm.mixin.Mixin;
 
 @Mixin(LivingEntity.class)
 public abstract class LivingEntityMixin extends Entity implements DynamicLightSource
 {
-    private int lambdynlights_luminance;
-
     public LivingEntityMixin(EntityType<?> type, World world)
     {
         super(type, world);
@@ -34,31 +29,20 @@ public abstract class LivingEntityMixin extends Entity implements DynamicLightSo
     @Override
     public void dynamicLightTick()
     {
+        int luminance;
         if (this.isOnFire() || this.isGlowing()) {
-            this.lambdynlights_luminance = 15;
+            luminance = 15;
         } else {
-            int luminance = 0;
-            BlockPos eyePos = new BlockPos(this.getX(), this.getEyeY(), this.getZ());
-            boolean submergedInFluid = !this.level.getFluidState(eyePos).isEmpty();
-            for (ItemStack equipped : this.getAllSlots()) {
-                if (!equipped.isEmpty())
-                    luminance = Math.max(luminance, DynamicLightsReforged.getLuminanceFromItemStack(equipped, submergedInFluid));
-            }
-
-            this.lambdynlights_luminance = luminance;
+            luminance = DynamicLightsReforged.getEquipmentLuminance((LivingEntity) (Object) this);
         }
 
-        int luminance = DynamicLightHandlers.getLuminanceFrom(this);
-        if (luminance > this.lambdynlights_luminance)
-            this.lambdynlights_luminance = luminance;
+        int handlerLuminance = DynamicLightHandlers.getLuminanceFrom(this);
+        if (handlerLuminance > luminance)
+            luminance = handlerLuminance;
 
-        if (!DynamicLightsConfig.EntityLighting.get() && this.getType() != EntityType.PLAYER)
-            this.lambdynlights_luminance = 0;
-    }
+        if (!DynamicLightsReforged.isEntityLightingEnabled() && this.getType() != EntityType.PLAYER)
+            luminance = 0;
 
-    @Override
-    public int getLuminance()
-    {
-        return this.lambdynlights_luminance;
+        DynamicLightsReforged.setLuminance(this, luminance);
     }
 }
@@ -13,6 +13,7 @@ import me.lambdaurora.lambdynlights.DynamicLightsReforged;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.world.ClientWorld;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -20,7 +21,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 /**
  * Mixin to MinecraftClient.
  * <p>
- * Goal: clear light sources cache when changing world.
+ * Goal: switch to the light sources registry of the new world when changing world, and tick the light sources in one pass at every tick.
  *
  * @author LambdAurora
  * @version 1.3.2
@@ -31,6 +32,19 @@ public class MinecraftClientMixin
 {
     @Inject(method = "updateLevelInEngines", at = @At("HEAD"))
     private void onSetWorld(ClientWorld world, CallbackInfo ci) {
-        DynamicLightsReforged.clearLightSources();
+        DynamicLightsReforged.onWorldChange(world);
+    }
+
+    @Shadow
+    public ClientWorld level;
+
+    @Inject(method = "tick", at = @At("HEAD"))
+    private void onTick(CallbackInfo ci) {
+        DynamicLightsReforged.onClientTick();
+    }
+
+    @Inject(method = "tick", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/world/ClientWorld;tickEntities()V", shift = At.Shift.AFTER))
+    private void onTickEntities(CallbackInfo ci) {
+        DynamicLightsReforged.tickLightSources(this.level);
     }
 }
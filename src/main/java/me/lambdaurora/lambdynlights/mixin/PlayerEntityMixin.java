@@ -14,8 +14,6 @@ import me.lambdaurora.lambdynlights.DynamicLightsReforged;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.item.ItemStack;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -26,9 +24,6 @@ public abstract class PlayerEntityMixin extends LivingEntity implements DynamicL
     @Shadow
     public abstract boolean isSpectator();
 
-    private int   lambdynlights_luminance;
-    private World lambdynlights_lastWorld;
-
     protected PlayerEntityMixin(EntityType<? extends LivingEntity> entityType, World world)
     {
         super(entityType, world);
@@ -37,35 +32,20 @@ public abstract class PlayerEntityMixin extends LivingEntity implements DynamicL
     @Override
     public void dynamicLightTick()
     {
+        int luminance;
         if (this.isOnFire() || this.isGlowing())
         {
-            this.lambdynlights_luminance = 15;
+            luminance = 15;
         }
         else
         {
-            int luminance = 0;
-            BlockPos eyePos = new BlockPos(this.getX(), this.getEyeY(), this.getZ());
-            boolean submergedInFluid = !this.level.getFluidState(eyePos).isEmpty();
-            for (ItemStack equipped : this.getAllSlots()) {
-                if (!equipped.isEmpty())
-                    luminance = Math.max(luminance, DynamicLightsReforged.getLuminanceFromItemStack(equipped, submergedInFluid));
-            }
-
-            this.lambdynlights_luminance = luminance;
+            luminance = DynamicLightsReforged.getEquipmentLuminance(this);
         }
 
         if (this.isSpectator())
-            this.lambdynlights_luminance = 0;
+            luminance = 0;
 
-        if (this.lambdynlights_lastWorld != this.getCommandSenderWorld()) {
-            this.lambdynlights_lastWorld = this.getCommandSenderWorld();
-            this.lambdynlights_luminance = 0;
-        }
-    }
-
-    @Override
-    public int getLuminance()
-    {
-        return this.lambdynlights_luminance;
+        // The luminance lives in the registry of the world, so a new world starts from a dark player.
+        DynamicLightsReforged.setLuminance(this, luminance);
     }
 }
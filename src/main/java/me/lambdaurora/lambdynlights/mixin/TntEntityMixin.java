@@ -11,16 +11,12 @@ package me.lambdaurora.lambdynlights.mixin;
 
 import me.lambdaurora.lambdynlights.DynamicLightSource;
 import me.lambdaurora.lambdynlights.DynamicLightsReforged;
-import me.lambdaurora.lambdynlights.config.DynamicLightsConfig;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.item.TNTEntity;
 import net.minecraft.world.World;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
-import org.spongepowered.asm.mixin.injection.At;
-import org.spongepowered.asm.mixin.injection.Inject;
-import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(TNTEntity.class)
 public abstract class TntEntityMixin extends Entity implements DynamicLightSource
@@ -29,7 +25,6 @@ public abstract class TntEntityMixin extends Entity implements DynamicLightSourc
     private int life;
 
     //private double lambdynlights_startFuseTimer = 80.0;
-    private int lambdynlights_luminance;
 
     public TntEntityMixin(EntityType<?> type, World world)
     {
@@ -42,36 +37,17 @@ public abstract class TntEntityMixin extends Entity implements DynamicLightSourc
     //    this.lambdynlights_startFuseTimer = this.life;
     //}
 
-    @Inject(method = "tick", at = @At("TAIL"))
-    private void onTick(CallbackInfo ci)
-    {
-        // We do not want to update the entity on the server.
-        if (this.getCommandSenderWorld().isClientSide()) {
-            if (!DynamicLightsConfig.EntityLighting.get())
-                return;
-
-            if (this.removed) {
-                this.setDynamicLightEnabled(false);
-            } else {
-                this.dynamicLightTick();
-                DynamicLightsReforged.updateTracking(this);
-            }
-        }
-    }
-
     @Override
     public void dynamicLightTick()
     {
-        if (this.isOnFire()) {
-            this.lambdynlights_luminance = 15;
+        int luminance;
+        if (!DynamicLightsReforged.isEntityLightingEnabled()) {
+            luminance = 0;
+        } else if (this.isOnFire()) {
+            luminance = 15;
         } else {
-            this.lambdynlights_luminance = (int) (-(life * life) * 10.0) + 10;
+            luminance = (int) (-(life * life) * 10.0) + 10;
         }
-    }
-
-    @Override
-    public int getLuminance()
-    {
-        return this.lambdynlights_luminance;
+        DynamicLightsReforged.setLuminance(this, luminance);
     }
 }
@@ -20,6 +20,6 @@ public class WorldRendererMixin
     public void render(MatrixStack l, float outlinelayerbuffer, long i2, boolean j2, ActiveRenderInfo k2, GameRenderer l2, LightTexture i3, Matrix4f irendertypebuffer, CallbackInfo ci)
     {
         Minecraft.getInstance().getProfiler().popPush("dynamic_lighting");
-        DynamicLightsReforged.updateAll((WorldRenderer) (Object) this);
+        DynamicLightsReforged.updateAll((WorldRenderer) (Object) this, k2);
     }
 }
\ No newline at end of file